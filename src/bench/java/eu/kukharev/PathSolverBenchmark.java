@@ -0,0 +1,110 @@
+package eu.kukharev;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк поиска лучшего пути на полях 3x3..10x10.
+ * <p>
+ * Поля строит {@link BoardGenerator}, как в игре, но с фиксированным зерном,
+ * так что от запуска к запуску это одни и те же поля.
+ * Одна операция — решение всего набора BOARDS полей данного размера.
+ * <p>
+ * Кроме времени JMH выводит счётчик nodes — узлов перебора в миллисекунду (смотреть
+ * в режиме thrpt) и, через GC-профайлер, скорость выделения памяти (gc.alloc.rate.norm —
+ * байт на операцию). Профайлер включён всегда, остальные параметры — как у JMH:
+ * <pre>
+ * mvn -Pbench package
+ * java -jar target/benchmarks.jar -p size=6,7,8
+ * </pre>
+ * Полный перебор 10x10 занимает минуты на поле, поэтому число узлов на одно поле
+ * ограничено параметром nodeBudget (0 — без ограничения). До 8x8 включительно
+ * бюджет не достигается, и результат — время полного доказательства оптимума.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathSolverBenchmark {
+    // Полей на операцию: одно поле слишком случайно по сложности
+    private static final int BOARDS = 4;
+    private static final long SEED = 20240501L;
+
+    @Param({"3", "4", "5", "6", "7", "8", "9", "10"})
+    public int size;
+
+    @Param({"20000000"})
+    public long nodeBudget;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private Board[] boards;
+
+    /**
+     * Счётчик узлов перебора, который JMH выводит рядом с основным результатом.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void generateBoards() {
+        BoardGenerator generator = new BoardGenerator(SEED + size);
+        boards = new Board[BOARDS];
+        for (int i = 0; i < BOARDS; i++) {
+            boards[i] = generator.next(size);
+        }
+    }
+
+    @Benchmark
+    public void solve(Counters counters, Blackhole blackhole) {
+        for (int i = 0; i < BOARDS; i++) {
+            PathSolver solver = boards[i].newSolver();
+            solver.setNodeBudget(nodeBudget);
+            PathResult result = solver.solveParallel(parallelism);
+            counters.nodes += result.nodesExplored;
+            blackhole.consume(result);
+        }
+    }
+
+    /**
+     * Запуск с GC-профайлером; аргументы командной строки — те же, что у JMH.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(PathSolverBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
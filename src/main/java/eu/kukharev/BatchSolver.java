@@ -0,0 +1,287 @@
+package eu.kukharev;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Пакетный решатель без JavaFX: решает все поля из файлов наборов
+ * ({@link BoardCorpus}) и сохранений ({@link SaveFile}) и пишет по строке
+ * на поле — счёт, доказан ли он, путь, число узлов и время. Для предрасчёта
+ * решений и замера пропускной способности решателя на сборочных серверах.
+ * <p>
+ * Поля решаются параллельно, каждое в одном потоке (полей много, так что делить
+ * каждое поле между потоками незачем). Решается не больше WINDOW_PER_THREAD
+ * полей на поток наперёд, а строки пишутся в порядке входа — память не растёт
+ * с размером набора. Сохранение решается от текущего положения игрока, как в игре:
+ * клетки, пройденные до сохранения, заняты, так что путь — это ход, который можно сыграть.
+ * Ходы из журнала слота (&lt;имя&gt;.journal рядом с &lt;имя&gt;.dat) применяются, как при загрузке.
+ * <p>
+ * Вывод — TSV с заголовком: source, index, size, ratio, optimal, lower_bound,
+ * expected, nodes, ms, path (клетки x * size + y через пробел). expected — счёт
+ * из набора, если он там есть. Сводка (поля в секунду, узлы в секунду,
+ * расхождения с набором) — в stderr. Файл, который не удалось прочитать,
+ * пропускается; код выхода 1, если были пропуски или расхождения.
+ */
+public class BatchSolver {
+    private static final int WINDOW_PER_THREAD = 4;
+
+    /**
+     * Поле и откуда оно взялось.
+     */
+    private static class Job {
+        final String source;
+        final long index;
+        final Board board;
+        // Занятые клетки (пройденные в сохранении) или null
+        final boolean[] blocked;
+        final double expected;
+
+        Job(String source, long index, Board board, boolean[] blocked, double expected) {
+            this.source = source;
+            this.index = index;
+            this.board = board;
+            this.blocked = blocked;
+            this.expected = expected;
+        }
+    }
+
+    private final int threads;
+    private final long timeLimitMillis;
+    private final boolean writePaths;
+    private final PrintWriter out;
+    private final ExecutorService workers;
+    private final ArrayDeque<Future<PathResult>> pending = new ArrayDeque<>();
+    private final ArrayDeque<Job> pendingJobs = new ArrayDeque<>();
+
+    private long boards;
+    private long unproven;
+    private long mismatches;
+    private long totalNodes;
+    private long skippedFiles;
+
+    /**
+     * @param threads         число рабочих потоков
+     * @param timeLimitMillis бюджет на одно поле (0 — без ограничения)
+     * @param writePaths      писать ли клетки пути
+     * @param out             куда писать строки результатов
+     */
+    public BatchSolver(int threads, long timeLimitMillis, boolean writePaths, PrintWriter out) {
+        this.threads = threads;
+        this.timeLimitMillis = timeLimitMillis;
+        this.writePaths = writePaths;
+        this.out = out;
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * [--threads N] [--time-limit MS] [--limit COUNT] [--output FILE] [--no-paths] &lt;file&gt;...
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeLimitMillis = 0;
+        long limit = Long.MAX_VALUE;
+        Path output = null;
+        boolean writePaths = true;
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--time-limit" -> timeLimitMillis = Long.parseLong(args[++i]);
+                    case "--limit" -> limit = Long.parseLong(args[++i]);
+                    case "--output" -> output = Paths.get(args[++i]);
+                    case "--no-paths" -> writePaths = false;
+                    default -> files.add(Paths.get(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            files.clear();
+        }
+        if (files.isEmpty() || threads < 1 || timeLimitMillis < 0 || limit < 0) {
+            System.err.println("Usage: BatchSolver [--threads N] [--time-limit MS] [--limit COUNT]"
+                    + " [--output FILE] [--no-paths] <corpus-or-save-file>...");
+            System.exit(2);
+        }
+
+        PrintWriter out = (output != null)
+                ? new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))
+                : new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        BatchSolver solver = new BatchSolver(threads, timeLimitMillis, writePaths, out);
+        long startNanos = System.nanoTime();
+        try {
+            solver.writeHeader();
+            long remaining = limit;
+            for (Path file : files) {
+                try {
+                    remaining -= solver.solveFile(file, remaining);
+                } catch (IOException e) {
+                    // Один плохой файл не повод бросать весь прогон
+                    System.err.println("Skipping " + file + ": " + e.getMessage());
+                    solver.skippedFiles++;
+                }
+            }
+            solver.drain(0);
+        } finally {
+            out.flush();
+            if (output != null) out.close();
+            solver.workers.shutdownNow();
+        }
+        solver.printSummary(System.nanoTime() - startNanos);
+        if (solver.mismatches > 0 || solver.skippedFiles > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Ставит в очередь поля из file (не больше limit).
+     *
+     * @return сколько полей поставлено
+     */
+    public long solveFile(Path file, long limit) throws IOException {
+        String source = file.toString();
+        BoardCorpus corpus;
+        try {
+            corpus = BoardCorpus.open(file);
+        } catch (IOException notCorpus) {
+            // Не набор — значит, сохранение (если и не оно, SaveFile скажет, что не так);
+            // у слота автосохранения последние ходы могут быть только в журнале рядом
+            GameState state = SaveStore.readSlotFile(file);
+            if (limit < 1) return 0;
+            submit(new Job(source, 0, boardOf(state), blockedOf(state), Double.NaN));
+            return 1;
+        }
+        try (corpus) {
+            long count = Math.min(limit, corpus.count());
+            for (long i = 0; i < count; i++) {
+                submit(new Job(source, i, corpus.board(i), null, corpus.ratio(i)));
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Поле сохранения: от текущего положения игрока до финиша по оставшимся клеткам.
+     */
+    static Board boardOf(GameState state) throws IOException {
+        int n = state.fieldSize;
+        if (!isInside(n, state.playerX, state.playerY) || !isInside(n, state.endX, state.endY)
+                || state.field[state.playerX][state.playerY] != -1 || state.field[state.endX][state.endY] != -2) {
+            throw new IOException("start and finish are not placed");
+        }
+        int[] cells = new int[n * n];
+        for (int x = 0; x < n; x++) {
+            System.arraycopy(state.field[x], 0, cells, x * n, n);
+        }
+        return new Board(n, cells, state.playerX * n + state.playerY, state.endX * n + state.endY);
+    }
+
+    /**
+     * Клетки, пройденные в сохранении: на поле они обычные пустые, но ходить в них нельзя.
+     */
+    static boolean[] blockedOf(GameState state) {
+        int n = state.fieldSize;
+        boolean[] blocked = new boolean[n * n];
+        for (int x = 0; x < n; x++) {
+            System.arraycopy(state.visited[x], 0, blocked, x * n, n);
+        }
+        return blocked;
+    }
+
+    private static boolean isInside(int n, int x, int y) {
+        return x >= 0 && x < n && y >= 0 && y < n;
+    }
+
+    private void submit(Job job) {
+        drain(threads * WINDOW_PER_THREAD - 1);
+        pendingJobs.add(job);
+        pending.add(workers.submit(() -> {
+            PathSolver solver = job.board.newSolver();
+            solver.setBlocked(job.blocked);
+            if (timeLimitMillis > 0) {
+                solver.setTimeBudget(timeLimitMillis);
+            }
+            return solver.solve();
+        }));
+    }
+
+    /**
+     * Дожидается и пишет результаты по порядку, пока в очереди больше keep полей.
+     */
+    private void drain(int keep) {
+        while (pending.size() > keep) {
+            Job job = pendingJobs.poll();
+            PathResult result;
+            try {
+                result = pending.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(job.source + " #" + job.index + ": " + e.getCause(), e.getCause());
+            }
+            record(job, result);
+        }
+    }
+
+    private void writeHeader() {
+        out.println("source\tindex\tsize\tratio\toptimal\tlower_bound\texpected\tnodes\tms\tpath");
+    }
+
+    private void record(Job job, PathResult result) {
+        boards++;
+        totalNodes += result.nodesExplored;
+        if (!result.optimal) {
+            unproven++;
+        }
+        boolean hasExpected = !Double.isNaN(job.expected);
+        if (hasExpected && result.optimal && Double.compare(result.bestRatio, job.expected) != 0) {
+            mismatches++;
+            System.err.println(job.source + " #" + job.index + ": expected " + job.expected
+                    + ", got " + result.bestRatio);
+        }
+
+        StringBuilder line = new StringBuilder();
+        line.append(job.source).append('\t').append(job.index).append('\t').append(job.board.size).append('\t')
+                .append(result.found() ? Double.toString(result.bestRatio) : "none").append('\t')
+                .append(result.optimal).append('\t')
+                .append(result.lowerBound).append('\t')
+                .append(hasExpected ? Double.toString(job.expected) : "").append('\t')
+                .append(result.nodesExplored).append('\t')
+                .append(String.format(Locale.ROOT, "%.3f", result.elapsedNanos / 1e6)).append('\t');
+        if (writePaths) {
+            for (int i = 0; i < result.path.length; i++) {
+                if (i > 0) line.append(' ');
+                line.append(result.path[i]);
+            }
+        }
+        out.println(line);
+        if (out.checkError()) {
+            throw new UncheckedIOException(new IOException("Failed to write results"));
+        }
+    }
+
+    private void printSummary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.err.printf(Locale.ROOT, "%d boards, %d threads, %.3f s: %.1f boards/s, %.0f nodes/s, %d not proven, %d mismatches%n",
+                boards, threads, seconds, boards / seconds, totalNodes / seconds, unproven, mismatches);
+    }
+}
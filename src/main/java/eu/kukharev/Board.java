@@ -0,0 +1,23 @@
+package eu.kukharev;
+
+/**
+ * Поле головоломки в формате {@link PathSolver}: значения построчно
+ * (cells[x * size + y]) и индексы клеток старта и финиша.
+ */
+public class Board {
+    public final int size;
+    public final int[] cells;
+    public final int start;
+    public final int end;
+
+    public Board(int size, int[] cells, int start, int end) {
+        this.size = size;
+        this.cells = cells;
+        this.start = start;
+        this.end = end;
+    }
+
+    public PathSolver newSolver() {
+        return new PathSolver(cells, size, start, end);
+    }
+}
@@ -0,0 +1,139 @@
+package eu.kukharev;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+/**
+ * Игровое поле, нарисованное на одном Canvas из атласа tiles.png.
+ * <p>
+ * Вместо N² узлов (StackPane + ImageView на клетку) в сцене один узел, а клетка —
+ * это прямоугольник tileSize x tileSize в позиции (y * tileSize, x * tileSize).
+ * Перерисовывается только то, что попросили: всё поле или отдельные клетки,
+ * так что ход стоит пару drawImage независимо от размера поля. Поля 50x50
+ * и 100x100 рисуются так же, просто с мелкими клетками.
+ * <p>
+ * Координаты те же, что у поля в игре: x — строка, y — столбец.
+ */
+public class BoardCanvas extends Canvas {
+    // Размер клетки в атласах tiles.png и цифр
+    static final int ORIGINAL_TILE_SIZE = 200;
+    // Сколько ширины окна остаётся вокруг поля
+    private static final int FIELD_MARGIN = 600;
+    private static final double OUTLINE_WIDTH = 3;
+    // Фрагменты атласа по индексу плитки (см. fieldTile)
+    private static final Rectangle2D[] FIELD_TILES = new Rectangle2D[12];
+
+    static {
+        for (int index = 0; index < FIELD_TILES.length; index++) {
+            FIELD_TILES[index] = new Rectangle2D(index * ORIGINAL_TILE_SIZE, 0, ORIGINAL_TILE_SIZE, ORIGINAL_TILE_SIZE);
+        }
+    }
+
+    private final Image tiles;
+    private final int[][] field;
+    private final int fieldSize;
+    private final double tileSize;
+
+    /**
+     * @param tiles    атлас клеток (tiles.png)
+     * @param field    поле игры; холст только читает его при перерисовке
+     * @param tileSize размер клетки на экране в пикселях
+     */
+    public BoardCanvas(Image tiles, int[][] field, double tileSize) {
+        super(field.length * tileSize, field.length * tileSize);
+        this.tiles = tiles;
+        this.field = field;
+        this.fieldSize = field.length;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Размер клетки на экране для поля fieldSize x fieldSize в окне шириной windowSize
+     * (не больше клетки атласа).
+     */
+    static int tileSizeFor(int fieldSize, int windowSize) {
+        return Math.min((windowSize - FIELD_MARGIN) / fieldSize, ORIGINAL_TILE_SIZE);
+    }
+
+    /**
+     * Перерисовывает всё поле по текущим значениям field.
+     */
+    public void redrawAll() {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+        for (int x = 0; x < fieldSize; x++) {
+            for (int y = 0; y < fieldSize; y++) {
+                drawTileOver(gc, x, y, field[x][y]);
+            }
+        }
+    }
+
+    /**
+     * Перерисовывает одну клетку по текущему значению field[x][y].
+     */
+    public void redrawCell(int x, int y) {
+        drawTile(x, y, field[x][y]);
+    }
+
+    /**
+     * Рисует в клетке плитку для значения value (не обязательно того, что в поле).
+     */
+    public void drawTile(int x, int y, int value) {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(y * tileSize, x * tileSize, tileSize, tileSize);
+        drawTileOver(gc, x, y, value);
+    }
+
+    private void drawTileOver(GraphicsContext gc, int x, int y, int value) {
+        Rectangle2D tile = fieldTile(value);
+        gc.drawImage(tiles, tile.getMinX(), tile.getMinY(), tile.getWidth(), tile.getHeight(),
+                y * tileSize, x * tileSize, tileSize, tileSize);
+    }
+
+    /**
+     * Обводит клетку рамкой (рамка пропадёт при перерисовке клетки).
+     */
+    public void outlineCell(int x, int y, Color color) {
+        GraphicsContext gc = getGraphicsContext2D();
+        double width = Math.min(OUTLINE_WIDTH, tileSize / 4);
+        gc.setStroke(color);
+        gc.setLineWidth(width);
+        gc.strokeRect(y * tileSize + width / 2, x * tileSize + width / 2, tileSize - width, tileSize - width);
+    }
+
+    /**
+     * Строка поля под точкой холста (для кликов) или -1, если мимо.
+     */
+    public int rowAt(double canvasY) {
+        return indexAt(canvasY);
+    }
+
+    /**
+     * Столбец поля под точкой холста (для кликов) или -1, если мимо.
+     */
+    public int columnAt(double canvasX) {
+        return indexAt(canvasX);
+    }
+
+    private int indexAt(double coordinate) {
+        int index = (int) Math.floor(coordinate / tileSize);
+        return (index >= 0 && index < fieldSize) ? index : -1;
+    }
+
+    /**
+     * Фрагмент атласа для клетки поля: 1..9 — индексы 0..8,
+     * -1 — 9 (старт), 0 — 10 (пустая), -2 — 11 (финиш).
+     */
+    static Rectangle2D fieldTile(int value) {
+        int index = switch (value) {
+            case -1 -> 9;   // Start
+            case -2 -> 11;  // End
+            case 0  -> 10;  // Пустая
+            default -> value - 1;
+        };
+        return FIELD_TILES[index];
+    }
+}
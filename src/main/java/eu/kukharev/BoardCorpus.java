@@ -0,0 +1,284 @@
+package eu.kukharev;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Набор полей одного размера с заранее посчитанным оптимальным счётом
+ * (для бенчмарков и регрессионных прогонов решателя).
+ * <p>
+ * Формат файла (little-endian): заголовок из HEADER_BYTES байт, затем записи
+ * фиксированной длины, поэтому запись i читается прямо из отображённого в память
+ * файла по смещению, без разбора предыдущих:
+ * <pre>
+ * заголовок: int magic, short version, short size, int recordBytes, long count, long seed, int 0
+ * запись:    double ratio, byte start, byte end, byte cells[size * size], выравнивание до 8
+ * </pre>
+ * Клетки хранятся как есть (1..9, -1 — старт, -2 — финиш), старт и финиш —
+ * индексы x * size + y без знака, поэтому размер поля не больше 16.
+ */
+public class BoardCorpus implements AutoCloseable {
+    private static final int MAGIC = 0x434E4456; // "VDNC"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int MAX_SIZE = 16;
+    // Один MappedByteBuffer не больше 2 ГБ — большой файл отображаем кусками по целым записям
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final int size;
+    private final int recordBytes;
+    private final long count;
+    private final long seed;
+    private final int recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    private BoardCorpus(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a board corpus");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported corpus version " + version);
+        }
+        this.size = header.getShort();
+        this.recordBytes = header.getInt();
+        this.count = header.getLong();
+        this.seed = header.getLong();
+        if (size < 1 || size > MAX_SIZE || recordBytes != recordBytes(size)
+                || channel.size() < HEADER_BYTES + count * recordBytes) {
+            throw new IOException("Corrupted corpus header");
+        }
+
+        this.recordsPerSegment = (int) (MAX_SEGMENT_BYTES / recordBytes);
+        int segmentCount = (int) ((count + recordsPerSegment - 1) / recordsPerSegment);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long first = (long) i * recordsPerSegment;
+            long records = Math.min(recordsPerSegment, count - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * recordBytes, records * recordBytes);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Открывает файл и отображает его записи в память (только чтение).
+     */
+    public static BoardCorpus open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BoardCorpus(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Зерно {@link BoardGenerator}, из которого построен набор.
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * Оптимальный счёт поля i (Double.MAX_VALUE, если пути нет).
+     */
+    public double ratio(long index) {
+        return segment(index).getDouble(offset(index));
+    }
+
+    public int start(long index) {
+        return segment(index).get(offset(index) + 8) & 0xFF;
+    }
+
+    public int end(long index) {
+        return segment(index).get(offset(index) + 9) & 0xFF;
+    }
+
+    /**
+     * Копирует клетки поля i в cells (длиной не меньше size * size) — без выделений,
+     * чтобы гонять набор в цикле.
+     */
+    public void copyCells(long index, int[] cells) {
+        MappedByteBuffer segment = segment(index);
+        int base = offset(index) + 10;
+        int total = size * size;
+        for (int cell = 0; cell < total; cell++) {
+            cells[cell] = segment.get(base + cell);
+        }
+    }
+
+    public Board board(long index) {
+        int[] cells = new int[size * size];
+        copyCells(index, cells);
+        return new Board(size, cells, start(index), end(index));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Board " + index + " of " + count);
+        }
+        return segments[(int) (index / recordsPerSegment)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % recordsPerSegment) * recordBytes;
+    }
+
+    private static int recordBytes(int size) {
+        int bytes = 8 + 2 + size * size;
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * Последовательная запись набора. Число записей в заголовке проставляется в {@link #close()}.
+     */
+    public static class Writer implements AutoCloseable {
+        private static final int BUFFER_RECORDS = 4096;
+
+        private final FileChannel channel;
+        private final int size;
+        private final int recordBytes;
+        private final long seed;
+        private final ByteBuffer buffer;
+        private long count;
+
+        public Writer(Path file, int size, long seed) throws IOException {
+            if (size < 1 || size > MAX_SIZE) {
+                throw new IllegalArgumentException("Board size must be 1.." + MAX_SIZE + ": " + size);
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.size = size;
+            this.recordBytes = recordBytes(size);
+            this.seed = seed;
+            this.buffer = ByteBuffer.allocate(BUFFER_RECORDS * recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader();
+            channel.position(HEADER_BYTES);
+        }
+
+        public void add(Board board, double ratio) throws IOException {
+            if (board.size != size) {
+                throw new IllegalArgumentException("Board size " + board.size + " in a corpus of size " + size);
+            }
+            if (buffer.remaining() < recordBytes) {
+                flush();
+            }
+            int recordStart = buffer.position();
+            buffer.putDouble(ratio);
+            buffer.put((byte) board.start);
+            buffer.put((byte) board.end);
+            for (int value : board.cells) {
+                buffer.put((byte) value);
+            }
+            buffer.position(recordStart + recordBytes);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                writeHeader();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) size)
+                    .putInt(recordBytes).putLong(count).putLong(seed).putInt(0);
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+
+    /**
+     * generate &lt;file&gt; &lt;size&gt; &lt;count&gt; &lt;seed&gt; — строит набор полным перебором;
+     * check &lt;file&gt; [limit] — заново решает поля набора и сверяет счёт.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 5 && args[0].equals("generate")) {
+            generate(Paths.get(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]), Long.parseLong(args[4]));
+        } else if (args.length >= 2 && args[0].equals("check")) {
+            check(Paths.get(args[1]), (args.length > 2) ? Long.parseLong(args[2]) : Long.MAX_VALUE);
+        } else {
+            System.err.println("Usage: BoardCorpus generate <file> <size> <count> <seed>");
+            System.err.println("       BoardCorpus check <file> [limit]");
+            System.exit(2);
+        }
+    }
+
+    private static void generate(Path file, int size, long count, long seed) throws IOException {
+        BoardGenerator generator = new BoardGenerator(seed);
+        try (Writer writer = new Writer(file, size, seed)) {
+            for (long i = 0; i < count; i++) {
+                Board board = generator.next(size);
+                writer.add(board, board.newSolver().solve().bestRatio);
+                if ((i + 1) % 10_000 == 0) {
+                    System.out.println((i + 1) + " / " + count);
+                }
+            }
+        }
+    }
+
+    private static void check(Path file, long limit) throws IOException {
+        try (BoardCorpus corpus = open(file)) {
+            long total = Math.min(limit, corpus.count());
+            long mismatches = 0;
+            long nodes = 0;
+            long startNanos = System.nanoTime();
+            for (long i = 0; i < total; i++) {
+                PathResult result = corpus.board(i).newSolver().solve();
+                nodes += result.nodesExplored;
+                if (Double.compare(result.bestRatio, corpus.ratio(i)) != 0) {
+                    mismatches++;
+                    System.out.println("Board " + i + ": expected " + corpus.ratio(i) + ", got " + result.bestRatio);
+                }
+            }
+            long ms = (System.nanoTime() - startNanos) / 1_000_000;
+            System.out.println(total + " boards, " + mismatches + " mismatches, " + nodes + " nodes, " + ms + " ms");
+            if (mismatches > 0) {
+                System.exit(1);
+            }
+        }
+    }
+}
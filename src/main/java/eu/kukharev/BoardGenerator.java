@@ -0,0 +1,80 @@
+package eu.kukharev;
+
+import java.util.Random;
+
+/**
+ * Генератор случайных полей с зерном: одно и то же зерно даёт ту же
+ * последовательность полей, так что любое поле можно воспроизвести
+ * (для профилирования, бенчмарков и регрессионных прогонов решателя).
+ * <p>
+ * Игра берёт из генератора то же самое, что и {@link #next(int)}, и в том же
+ * порядке: сначала старт и финиш, потом очки клеток построчно.
+ */
+public class BoardGenerator {
+    private final long seed;
+    private final Random random;
+
+    public BoardGenerator(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Генератор со случайным зерном (узнать его можно через {@link #getSeed()}).
+     */
+    public static BoardGenerator withRandomSeed() {
+        return new BoardGenerator(new Random().nextLong());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Следующее поле size x size: старт, финиш не рядом со стартом, очки 1..9.
+     */
+    public Board next(int size) {
+        int[] startEnd = nextStartEnd(size);
+        int[] cells = new int[size * size];
+        cells[startEnd[0]] = -1;
+        cells[startEnd[1]] = -2;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cell != startEnd[0] && cell != startEnd[1]) {
+                cells[cell] = nextValue();
+            }
+        }
+        return new Board(size, cells, startEnd[0], startEnd[1]);
+    }
+
+    /**
+     * Случайные старт и финиш (индексы x * size + y); финиш перевыбирается,
+     * пока он совпадает со стартом или стоит с ним рядом.
+     */
+    public int[] nextStartEnd(int size) {
+        int startX = random.nextInt(size);
+        int startY = random.nextInt(size);
+        int endX, endY;
+        do {
+            endX = random.nextInt(size);
+            endY = random.nextInt(size);
+        } while (isEndTooClose(startX, startY, endX, endY));
+        return new int[]{startX * size + startY, endX * size + endY};
+    }
+
+    /**
+     * Очки для очередной клетки: 1..9.
+     */
+    public int nextValue() {
+        return random.nextInt(9) + 1;
+    }
+
+    /**
+     * Финиш нельзя ставить на старт и на соседнюю с ним клетку (по диагонали можно).
+     */
+    public static boolean isEndTooClose(int sx, int sy, int ex, int ey) {
+        if (sx == ex && sy == ey) return true;
+        int dx = Math.abs(sx - ex);
+        int dy = Math.abs(sy - ey);
+        return (dx < 2 && dy < 2 && (dx != 1 || dy != 1));
+    }
+}
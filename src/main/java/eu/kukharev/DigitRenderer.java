@@ -0,0 +1,86 @@
+package eu.kukharev;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Числа из цифр атласа tiles.png (для статистики и экрана итога).
+ * <p>
+ * Десять цифр растеризуются один раз нужного размера (по snapshot на цифру),
+ * а число собирается копированием их пикселей в WritableImage — без узлов
+ * сцены и без snapshot на каждое число. Создавать и вызывать — в FX-потоке.
+ */
+public class DigitRenderer {
+    // Промежуток между цифрами, как у HBox(5) раньше
+    private static final int SPACING = 5;
+
+    private final int digitSize;
+    private final PixelReader[] glyphs = new PixelReader[10];
+
+    /**
+     * @param tiles     атлас (цифры 1..9 — плитки 0..8, ноль — плитка 9)
+     * @param digitSize размер цифры на экране в пикселях
+     */
+    public DigitRenderer(Image tiles, int digitSize) {
+        this.digitSize = digitSize;
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        for (int digit = 0; digit <= 9; digit++) {
+            ImageView tileView = new ImageView(tiles);
+            tileView.setViewport(digitTile(digit));
+            tileView.setFitWidth(digitSize);
+            tileView.setFitHeight(digitSize);
+            glyphs[digit] = tileView.snapshot(params, null).getPixelReader();
+        }
+    }
+
+    /**
+     * Картинка с десятичной записью value.
+     */
+    public Image render(int value) {
+        String text = String.valueOf(value);
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isDigit(text.charAt(i))) count++;
+        }
+        if (count == 0) {
+            return new WritableImage(1, digitSize);
+        }
+
+        WritableImage image = new WritableImage(count * digitSize + (count - 1) * SPACING, digitSize);
+        PixelWriter writer = image.getPixelWriter();
+        int x = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isDigit(c)) continue;
+            writer.setPixels(x, 0, digitSize, digitSize, glyphs[c - '0'], 0, 0);
+            x += digitSize + SPACING;
+        }
+        return image;
+    }
+
+    /**
+     * Показывает value в view, если там сейчас не оно (последнее показанное
+     * значение хранится в userData) — неизменившееся число не перерисовывается.
+     */
+    public void show(ImageView view, int value) {
+        if (Integer.valueOf(value).equals(view.getUserData())) return;
+        view.setUserData(value);
+        view.setImage(render(value));
+    }
+
+    /**
+     * Фрагмент атласа с цифрой (0..9).
+     */
+    private static Rectangle2D digitTile(int digit) {
+        int index = (digit == 0) ? 9 : (digit - 1);
+        int tile = BoardCanvas.ORIGINAL_TILE_SIZE;
+        return new Rectangle2D(index * tile, 0, tile, tile);
+    }
+}
@@ -1,16 +1,17 @@
 package eu.kukharev;
 
 import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
@@ -18,7 +19,13 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.util.Duration;
 
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
  * Класс, управляющий игровым полем и логикой игры.
@@ -27,18 +34,55 @@ public class GameFieldManager {
     private final WindowManager windowManager;
     private int fieldSize;
     private final boolean manualPlacement;
-    private static final int ORIGINAL_TILE_SIZE = 200;
+    // Сложность поля (ANY — очки клеток просто случайные, как раньше)
+    private final PuzzleGenerator.Difficulty difficulty;
     private static final int WINDOW_SIZE = 1000;
-    private static final int CELL_SPACING = 0;
+    // Цифры счёта рисуются размером с клетку, но не мельче этого (на больших полях клетки крошечные)
+    private static final int MIN_DIGIT_SIZE = 40;
+    // Сколько ждём поиск лучшего пути после финиша, прежде чем показать лучший найденный
+    private static final long SEARCH_BUDGET_MILLIS = 10_000;
+    // Пока игрок играет, поиск лучшего пути ограничен по времени: столько-то мс на клетку
+    // поля, но не больше SPECULATIVE_MAX_MILLIS. Без этого предела — только после финиша
+    private static final long SPECULATIVE_MILLIS_PER_CELL = 200;
+    private static final long SPECULATIVE_MAX_MILLIS = 60_000;
+    // Потоки поиска во время игры: на один меньше, чем ядер (одно остаётся FX-потоку),
+    // демоны с низким приоритетом. Пул общий для всех партий, простаивающие потоки он закрывает сам
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("best-path-search-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            },
+            null, false);
+    // Бюджет одного пересчёта подсказки после хода
+    private static final long HINT_BUDGET_MILLIS = 40;
+    // Слот автосохранения: снимок при старте партии и при закрытии окна, между ними — журнал ходов
+    private static final String AUTOSAVE_SLOT = "autosave";
+    // Через сколько ходов журнал уплотняется в новый снимок
+    private static final int JOURNAL_COMPACT_MOVES = 256;
+    // Сколько кандидатов перебирает генератор поля заданной сложности, прежде чем сдаться
+    private static final long PUZZLE_CANDIDATES = 200;
+    // Сколько игрок ждёт поле заданной сложности, прежде чем играть на обычном случайном
+    private static final long PUZZLE_TIME_LIMIT_MILLIS = 15_000;
+    // Сколько секунд держится надпись о том, что поле заданной сложности не подобрано
+    private static final double NOTICE_SECONDS = 5;
+    private static final DateTimeFormatter SLOT_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
 
     private int[][] field;
     private boolean[][] visited;
+    // Генератор случайного поля; по его зерну поле можно воспроизвести
+    private final BoardGenerator generator = BoardGenerator.withRandomSeed();
     private Image tiles;
     private int playerX, playerY;   // Текущее положение игрока
     private int startX, startY;     // Изначальная точка старта (не меняется)
     private int endX, endY;         // Координаты финиша
     private int tileSize;
-    private GridPane grid;
+    // Поле рисуется на одном холсте; boardPane задаёт его положение на экране
+    private BoardCanvas boardView;
+    private StackPane boardPane;
     private final StackPane root = new StackPane();
 
     // Для статистики прохождения
@@ -52,12 +96,13 @@ public class GameFieldManager {
     // Для таймера
     private final long startTime;
     private Timeline blinkTimeline; // отдельная анимация для мигания
+    private BoardCanvas pathOverlay; // «цифры» лучшего пути поверх поля, для мигания
 
     // Элементы статистики
     private VBox statsBox;
     private ImageView movesView, sumView, scoreView, timerView;
+    private DigitRenderer digitRenderer;
     private Timeline timeline; // Для обновления таймера и статистики
-    private double bestScore = Double.MAX_VALUE;
 
     // Список координат лучшего пути
     private List<int[]> bestPath = new ArrayList<>();
@@ -69,13 +114,44 @@ public class GameFieldManager {
     // чтобы можно было вернуться из режима показа пути
     private List<Node> endScreenNodesBackup = new ArrayList<>();
 
+    // Фоновый поиск лучшего пути: запускается, как только поле готово, и идёт,
+    // пока игрок играет. Его результат и счёт игрока (когда он дошёл до финиша)
+    private BestPathTask bestPathTask;
+    private PathResult bestPathResult;
+    // Снимок поля и занятых клеток, на котором идёт поиск (после финиша поиск продолжается на нём же)
+    private int[] searchBoard;
+    private boolean[] searchBlocked;
+    private double finalScore;
+    private boolean gameFinished = false;
+    // Подсказка «лучший путь отсюда»: пройденные клетки (индексы x * size + y от старта),
+    // движок подсказки на том же снимке поля и текущий пересчёт
+    private final List<Integer> trail = new ArrayList<>();
+    // Фоновый подбор поля заданной сложности (null — поле готово)
+    private Task<Board> puzzleTask;
+    private HintEngine hintEngine;
+    private Task<PathResult> hintTask;
+    private boolean hintMode = false;
+    // Клетки, обведённые последней подсказкой (чтобы стереть только их)
+    private int[] hintCells = new int[0];
+    // Элементы экрана итога, которые обновляет поиск
+    private ProgressIndicator searchProgress;
+    private Button cancelSearchButton;
+    private VBox endButtons;
+    // Запись партии для повтора: состояние, когда поле стало готово, и ходы после него
+    private GameState replayStart;
+    private final ByteArrayOutputStream replayMoves = new ByteArrayOutputStream();
+    private Replay replay;
+    private ImageView endBackgroundView;
+
     /**
      * Конструктор для нового поля (с опцией ручной или автоматической расстановки).
      */
-    public GameFieldManager(WindowManager windowManager, int fieldSize, boolean manualPlacement) {
+    public GameFieldManager(WindowManager windowManager, int fieldSize, boolean manualPlacement,
+                            PuzzleGenerator.Difficulty difficulty) {
         this.windowManager = windowManager;
         this.fieldSize = fieldSize;
         this.manualPlacement = manualPlacement;
+        this.difficulty = difficulty;
 
         this.field = new int[fieldSize][fieldSize];
         this.visited = new boolean[fieldSize][fieldSize];
@@ -103,6 +179,7 @@ public class GameFieldManager {
 
         // Поскольку поле уже готовое, ставим manualPlacement = false
         this.manualPlacement = false;
+        this.difficulty = PuzzleGenerator.Difficulty.ANY;
 
         // Проверяем, действительно ли в поле -1 (старт) и -2 (финиш)
         if (isValidCoord(playerX, playerY) && field[playerX][playerY] == -1) {
@@ -122,36 +199,32 @@ public class GameFieldManager {
      */
     public Scene createGameScene() {
         // Фон
-        Image background = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/BG1.png")));
+        Image background = ImageCache.get("/BG1.png");
         ImageView backgroundView = new ImageView(background);
         backgroundView.setFitWidth(WINDOW_SIZE);
         backgroundView.setFitHeight(WINDOW_SIZE);
 
-        grid = new GridPane();
-        grid.setPadding(new Insets(350, 100, 300, 350));
-        grid.setHgap(CELL_SPACING);
-        grid.setVgap(CELL_SPACING);
-
-        tiles = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/tiles.png")));
+        tiles = ImageCache.get("/tiles.png");
 
         calculateTileSize();
+        createBoardView();
         // Если расстановка случайная, можно сразу создать старт, финиш, заполнить поле
         if (!manualPlacement) {
             generateRandomStartEnd();
-            generateRandomField();
             startPlaced = true;
             endPlaced   = true;
+            generateField();
         }
 
         createStatsPanel();
 
-        VBox container = new VBox(10, grid, statsBox);
+        VBox container = new VBox(10, boardPane, statsBox);
         container.setAlignment(Pos.TOP_CENTER);
 
         updateGrid();
         updateStatsPanel();
 
-        root.getChildren().addAll(backgroundView, container, grid);
+        root.getChildren().addAll(backgroundView, container, boardPane);
 
         // Запуск обновления статистики раз в 1 секунду
         timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateStatsPanel()));
@@ -162,8 +235,8 @@ public class GameFieldManager {
         Scene scene = new Scene(root, WINDOW_SIZE, WINDOW_SIZE);
         windowManager.stage.setOnCloseRequest(e -> {
             e.consume();
-            saveGame();
-            Platform.exit();
+            // Запись идёт в фоне — выходим, когда она закончится
+            saveGame(AUTOSAVE_SLOT).whenComplete((slot, error) -> Platform.exit());
         });
 
         return scene;
@@ -173,28 +246,30 @@ public class GameFieldManager {
      * Создаёт игровую сцену из загруженного состояния (loaded).
      */
     public Scene createGameSceneFromState(GameState loaded) {
-        Image background = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/BG1.png")));
+        Image background = ImageCache.get("/BG1.png");
         ImageView backgroundView = new ImageView(background);
         backgroundView.setFitWidth(WINDOW_SIZE);
         backgroundView.setFitHeight(WINDOW_SIZE);
 
-        grid = new GridPane();
-        grid.setPadding(new Insets(350, 100, 300, 350));
-        grid.setHgap(CELL_SPACING);
-        grid.setVgap(CELL_SPACING);
-
-        tiles = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/tiles.png")));
+        tiles = ImageCache.get("/tiles.png");
 
         calculateTileSize();
+        createBoardView();
 
         createStatsPanel();
-        VBox container = new VBox(10, grid, statsBox);
+        VBox container = new VBox(10, boardPane, statsBox);
         container.setAlignment(Pos.TOP_CENTER);
 
         updateGrid();
         updateStatsPanel();
 
-        root.getChildren().addAll(backgroundView, container, grid);
+        root.getChildren().addAll(backgroundView, container, boardPane);
+
+        // Лучший путь ищем от текущего положения игрока на сохранённом поле
+        if (startPlaced && endPlaced) {
+            startBestPathSearch();
+            startRecording();
+        }
 
         timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateStatsPanel()));
         timeline.setCycleCount(Timeline.INDEFINITE);
@@ -203,15 +278,38 @@ public class GameFieldManager {
         Scene scene = new Scene(root, WINDOW_SIZE, WINDOW_SIZE);
         windowManager.stage.setOnCloseRequest(e -> {
             e.consume();
-            saveGame();
-            Platform.exit();
+            // Запись идёт в фоне — выходим, когда она закончится
+            saveGame(AUTOSAVE_SLOT).whenComplete((slot, error) -> Platform.exit());
         });
         return scene;
     }
 
     // ------------------ ЛОГИКА СОХРАНЕНИЯ ------------------
 
-    private void saveGame() {
+    /**
+     * Сохраняет партию в слот slot.
+     *
+     * @return завершается, когда сохранение записано на диск (или не удалось)
+     */
+    private CompletableFuture<SaveStore.Slot> saveGame(String slot) {
+        return windowManager.saveGameState(slot, currentState());
+    }
+
+    /**
+     * Запись партии с этого момента (поле готово): автосохранение — снимок сейчас
+     * и дальше журнал ходов, и для повтора — копия состояния и направления ходов.
+     */
+    private void startRecording() {
+        GameState state = currentState();
+        windowManager.startAutosave(AUTOSAVE_SLOT, state);
+        replayStart = state.copy();
+        replayMoves.reset();
+    }
+
+    /**
+     * Текущее состояние партии (массивы поля общие с игрой — сохранять сразу).
+     */
+    private GameState currentState() {
         GameState state = new GameState();
         state.fieldSize = fieldSize;
         state.field     = field;
@@ -222,7 +320,7 @@ public class GameFieldManager {
         state.endY      = endY;
         state.moves     = moves;
         state.visitedValues.addAll(visitedValues);
-        windowManager.saveGameState(state);
+        return state;
     }
 
     // ------------------ ОБЩИЕ МЕТОДЫ ------------------
@@ -268,13 +366,26 @@ public class GameFieldManager {
             statsBox.setScaleX(1.2);
             statsBox.setScaleY(1.2);
             statsBox.setPadding(new Insets(220, 0, 0, 290));
-        } else if (fieldSize == 10) {
+        } else if (fieldSize >= 10) {
             statsBox.setScaleX(1.3);
             statsBox.setScaleY(1.3);
             statsBox.setPadding(new Insets(220, 0, 0, 310));
         }
 
-        statsBox.getChildren().addAll(movesBox, sumBox, scoreBox, timeBox);
+        Button hintButton = new Button("Hint");
+        hintButton.setStyle("-fx-font-size: 16;");
+        hintButton.setOnAction(event -> toggleHint());
+
+        // Каждое сохранение кнопкой — новый слот с датой и временем в имени
+        Button saveButton = new Button("Save");
+        saveButton.setStyle("-fx-font-size: 16;");
+        saveButton.setOnAction(event -> {
+            saveButton.setDisable(true);
+            saveGame("game-" + SLOT_NAME_FORMAT.format(LocalDateTime.now()))
+                    .whenComplete((slot, error) -> Platform.runLater(() -> saveButton.setDisable(false)));
+        });
+
+        statsBox.getChildren().addAll(movesBox, sumBox, scoreBox, timeBox, hintButton, saveButton);
 
         movesLabel.setStyle("-fx-text-fill: white; -fx-font-size: 16;");
         sumLabel.setStyle("-fx-text-fill: black; -fx-font-size: 16;");
@@ -292,114 +403,181 @@ public class GameFieldManager {
         double sc = (steps == 0) ? 0 : (double) sum / steps;
         int elapsedSec = (int) ((System.currentTimeMillis() - startTime) / 1000);
 
-        movesView.setImage(createScoreImage(steps));
-        sumView.setImage(createScoreImage(sum));
-        scoreView.setImage(createScoreImage((int) Math.round(sc)));
-        timerView.setImage(createScoreImage(elapsedSec));
+        // Раз в секунду обычно меняется только время — остальное не перерисовывается
+        DigitRenderer digits = digits();
+        digits.show(movesView, steps);
+        digits.show(sumView, sum);
+        digits.show(scoreView, (int) Math.round(sc));
+        digits.show(timerView, elapsedSec);
     }
 
     /**
-     * Формируем картинку из цифровых тайлов для заданного числа.
+     * Цифры для статистики и экрана итога (растеризуются при первом обращении).
      */
-    private Image createScoreImage(int value) {
-        HBox digitsBox = new HBox(5);
-        digitsBox.setStyle("-fx-background-color: transparent;");
-        String str = String.valueOf(value);
-
-        for (char c : str.toCharArray()) {
-            int digit = Character.getNumericValue(c);
-            if (digit >= 0 && digit <= 9) {
-                ImageView tileView = new ImageView(tiles);
-                tileView.setViewport(getDigitViewport(digit));
-                tileView.setFitWidth(tileSize);
-                tileView.setFitHeight(tileSize);
-                digitsBox.getChildren().add(tileView);
-            }
+    private DigitRenderer digits() {
+        if (digitRenderer == null) {
+            digitRenderer = new DigitRenderer(tiles, digitSize());
         }
-        SnapshotParameters params = new SnapshotParameters();
-        params.setFill(Color.TRANSPARENT);
-        return digitsBox.snapshot(params, null);
+        return digitRenderer;
     }
 
     private void generateRandomStartEnd() {
-        Random random = new Random();
-        playerX = random.nextInt(fieldSize);
-        playerY = random.nextInt(fieldSize);
+        int[] startEnd = generator.nextStartEnd(fieldSize);
+        playerX = startEnd[0] / fieldSize;
+        playerY = startEnd[0] % fieldSize;
         field[playerX][playerY] = -1; // Start
 
         // Запомним стартовые координаты
         this.startX = playerX;
         this.startY = playerY;
 
-        do {
-            endX = random.nextInt(fieldSize);
-            endY = random.nextInt(fieldSize);
-        } while (isValidEndPosition(playerX, playerY, endX, endY));
-
+        endX = startEnd[1] / fieldSize;
+        endY = startEnd[1] % fieldSize;
         field[endX][endY] = -2; // End
     }
 
+    /**
+     * Заполняет поле очками, когда старт и финиш уже стоят, и запускает поиск
+     * лучшего пути и запись партии. Поле заданной сложности подбирается в фоне
+     * (см. {@link PuzzleGenerator}); пока его нет, клики по полю не принимаются.
+     * Подбор идёт не дольше PUZZLE_TIME_LIMIT_MILLIS, и его можно отменить кнопкой
+     * «Cancel» — в обоих случаях поле заполняется обычным случайным образом
+     * (если не успели, игрок видит об этом надпись над полем).
+     * Для полей больше PuzzleGenerator.MAX_SIZE сложность не выбирается.
+     */
+    private void generateField() {
+        if (difficulty == PuzzleGenerator.Difficulty.ANY || fieldSize > PuzzleGenerator.MAX_SIZE) {
+            generateRandomField();
+            startBestPathSearch();
+            startRecording();
+            return;
+        }
+
+        int start = startX * fieldSize + startY;
+        int end = endX * fieldSize + endY;
+        Task<Board> task = new Task<>() {
+            @Override
+            protected Board call() {
+                List<PuzzleGenerator.Puzzle> puzzles = new PuzzleGenerator(generator.getSeed(),
+                        Runtime.getRuntime().availableProcessors())
+                        .generate(fieldSize, start, end, difficulty, 1, PUZZLE_CANDIDATES, PUZZLE_TIME_LIMIT_MILLIS);
+                return puzzles.isEmpty() ? null : puzzles.get(0).board;
+            }
+        };
+        puzzleTask = task;
+        Label generatingLabel = new Label("Generating " + difficulty.name().toLowerCase(Locale.ROOT) + " board...");
+        generatingLabel.setStyle("-fx-text-fill: black; -fx-font-size: 16;");
+        // Не ждать подбора — сразу играть на обычном случайном поле
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setStyle("-fx-font-size: 14;");
+        HBox generatingBox = new HBox(10, generatingLabel, cancelButton);
+        generatingBox.setAlignment(Pos.CENTER);
+        generatingBox.setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        generatingBox.setTranslateY(-420);
+        root.getChildren().add(generatingBox);
+
+        cancelButton.setOnAction(e -> {
+            if (task != puzzleTask) return;
+            puzzleTask = null;
+            task.cancel();
+            root.getChildren().remove(generatingBox);
+            startWithBoard(null);
+        });
+        task.setOnSucceeded(e -> {
+            if (task != puzzleTask) return;
+            puzzleTask = null;
+            root.getChildren().remove(generatingBox);
+            if (task.getValue() == null) {
+                // Подходящего не нашлось за PUZZLE_TIME_LIMIT_MILLIS среди PUZZLE_CANDIDATES
+                showNotice("No " + difficulty.name().toLowerCase(Locale.ROOT) + " board found in time, playing a random one");
+            }
+            startWithBoard(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            if (task != puzzleTask) return;
+            puzzleTask = null;
+            root.getChildren().remove(generatingBox);
+            task.getException().printStackTrace();
+            showNotice("Board generation failed, playing a random one");
+            startWithBoard(null);
+        });
+
+        Thread thread = new Thread(task, "puzzle-task");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Надпись над полем (там же, где была «Generating ...»), которая через
+     * NOTICE_SECONDS исчезает сама.
+     */
+    private void showNotice(String text) {
+        Label notice = new Label(text);
+        notice.setStyle("-fx-text-fill: black; -fx-font-size: 16;");
+        notice.setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        notice.setTranslateY(-420);
+        root.getChildren().add(notice);
+
+        PauseTransition pause = new PauseTransition(Duration.seconds(NOTICE_SECONDS));
+        pause.setOnFinished(e -> root.getChildren().remove(notice));
+        pause.play();
+    }
+
+    /**
+     * Начинает партию на подобранном поле board (null — на обычном случайном).
+     */
+    private void startWithBoard(Board board) {
+        if (board == null) {
+            generateRandomField();
+        } else {
+            for (int i = 0; i < fieldSize; i++) {
+                System.arraycopy(board.cells, i * fieldSize, field[i], 0, fieldSize);
+            }
+        }
+        startBestPathSearch();
+        startRecording();
+        updateGrid();
+        updateStatsPanel();
+    }
+
     private void generateRandomField() {
-        Random random = new Random();
         for (int i = 0; i < fieldSize; i++) {
             for (int j = 0; j < fieldSize; j++) {
                 if (field[i][j] != -1 && field[i][j] != -2) {
-                    field[i][j] = random.nextInt(9) + 1;
+                    field[i][j] = generator.nextValue();
                 }
             }
         }
     }
 
     private boolean isValidEndPosition(int sx, int sy, int ex, int ey) {
-        if (sx == ex && sy == ey) return true;
-        int dx = Math.abs(sx - ex);
-        int dy = Math.abs(sy - ey);
-        return (dx < 2 && dy < 2 && (dx != 1 || dy != 1));
+        return BoardGenerator.isEndTooClose(sx, sy, ex, ey);
     }
 
     private void calculateTileSize() {
-        tileSize = Math.min((WINDOW_SIZE - 600) / fieldSize, ORIGINAL_TILE_SIZE);
+        tileSize = BoardCanvas.tileSizeFor(fieldSize, WINDOW_SIZE);
     }
 
-    private StackPane createCell(int x, int y) {
-        StackPane cell = new StackPane();
-        ImageView imageView = new ImageView(tiles);
-        imageView.setViewport(getFieldViewport(field[x][y]));
-        imageView.setFitWidth(tileSize);
-        imageView.setFitHeight(tileSize);
-
-        cell.getChildren().add(imageView);
-
-        // Если мы в режиме показа лучшего пути — отключаем клики
-        if (!bestPathMode) {
-            cell.setOnMouseClicked(event -> handleCellClick(event, x, y));
-        }
-        return cell;
+    private int digitSize() {
+        return Math.max(tileSize, MIN_DIGIT_SIZE);
     }
 
     /**
-     * Возвращает нужный фрагмент тайлсета для клетки поля (старта, финиша, цифры и т.д.).
+     * Холст поля с обработкой кликов: клетка под курсором считается по координатам.
      */
-    private Rectangle2D getFieldViewport(int value) {
-        // value: 1..9 => индексы 0..8
-        // -1 => 9 (start), -2 => 11 (end), 0 => 10 (пустая)
-        int index = switch (value) {
-            case -1 -> 9;   // Start
-            case -2 -> 11;  // End
-            case 0  -> 10;  // Пустая
-            default -> value - 1;
-        };
-        double x = index * ORIGINAL_TILE_SIZE;
-        return new Rectangle2D(x, 0, ORIGINAL_TILE_SIZE, ORIGINAL_TILE_SIZE);
-    }
+    private void createBoardView() {
+        boardView = new BoardCanvas(tiles, field, tileSize);
+        boardView.setOnMouseClicked(event -> {
+            int x = boardView.rowAt(event.getY());
+            int y = boardView.columnAt(event.getX());
+            if (x >= 0 && y >= 0) {
+                handleCellClick(event, x, y);
+            }
+        });
 
-    /**
-     * Возвращает нужный фрагмент тайлсета для отображения цифры (0..9).
-     */
-    private Rectangle2D getDigitViewport(int digit) {
-        int index = (digit == 0) ? 9 : (digit - 1);
-        double x = index * ORIGINAL_TILE_SIZE;
-        return new Rectangle2D(x, 0, ORIGINAL_TILE_SIZE, ORIGINAL_TILE_SIZE);
+        boardPane = new StackPane(boardView);
+        boardPane.setAlignment(Pos.TOP_LEFT);
+        boardPane.setPadding(new Insets(350, 100, 300, 350));
     }
 
     /**
@@ -407,6 +585,7 @@ public class GameFieldManager {
      */
     private void handleCellClick(MouseEvent event, int x, int y) {
         if (bestPathMode) return; // если режим лучшего пути — не даём ходить
+        if (puzzleTask != null) return; // поле ещё подбирается
 
         // Ручная расстановка
         if (manualPlacement && !startPlaced) {
@@ -417,7 +596,7 @@ public class GameFieldManager {
             startY = y;
 
             startPlaced = true;
-            updateGrid();
+            boardView.redrawCell(x, y);
             updateStatsPanel();
             return;
         }
@@ -428,7 +607,7 @@ public class GameFieldManager {
             endY = y;
             endPlaced = true;
 
-            generateRandomField();
+            generateField();
             updateGrid();
             updateStatsPanel();
             return;
@@ -440,22 +619,35 @@ public class GameFieldManager {
                 visited[playerX][playerY] = true;
                 visitedValues.add(field[x][y]);
                 moves++;
+                int direction = MoveJournal.direction(playerX, playerY, x, y);
+                replayMoves.write(direction);
 
                 if (field[x][y] == -2) {
-                    // пришли на финиш
+                    // пришли на финиш (в журнал автосохранения этот ход не пишем — см. endGame)
                     updateStatsPanel();
                     endGame();
                     return;
                 }
+                windowManager.journalMove(direction);
 
                 // Сдвигаем "игрока" на новую позицию
                 field[playerX][playerY] = 0; // то место, где был игрок, обнуляем
+                boardView.redrawCell(playerX, playerY);
                 playerX = x;
                 playerY = y;
                 field[playerX][playerY] = -1; // ставим -1 в новой позиции
+                boardView.redrawCell(playerX, playerY);
+                trail.add(x * fieldSize + y);
+                if (moves % JOURNAL_COMPACT_MOVES == 0) {
+                    saveGame(AUTOSAVE_SLOT);
+                }
 
-                updateGrid();
+                // Ход меняет ровно две клетки — всё поле не перерисовываем
+                clearHint();
                 updateStatsPanel();
+                if (hintMode) {
+                    requestHint();
+                }
             }
         }
     }
@@ -466,32 +658,30 @@ public class GameFieldManager {
     }
 
     /**
-     * Перерисовка грида (grid) в соответствии с текущим состоянием field[][].
+     * Перерисовка всего поля в соответствии с текущим состоянием field[][]
+     * (при ходе перерисовываются только изменившиеся клетки).
      */
     private void updateGrid() {
-        grid.getChildren().clear();
-        for (int i = 0; i < fieldSize; i++) {
-            for (int j = 0; j < fieldSize; j++) {
-                StackPane cell = createCell(i, j);
-                grid.add(cell, j, i);
-            }
-        }
+        boardView.redrawAll();
     }
 
     /**
-     * Завершение игры: останавливаем таймер, считаем счёт игрока,
-     * вызываем поиск лучшего пути (recursion) и переходим на экран итога.
+     * Завершение игры: останавливаем таймер, считаем счёт игрока и показываем
+     * экран итога. Лучший путь к этому моменту обычно уже найден фоновым поиском;
+     * если нет — ждём его не дольше SEARCH_BUDGET_MILLIS.
      */
     private void endGame() {
         if (timeline != null) timeline.stop();
+        cancelHint();
 
         int sum = visitedValues.stream().mapToInt(Integer::intValue).sum();
-        double finalScore = (moves == 0) ? 0 : (double) sum / moves;
-
-        // Считаем лучший счёт и лучшую последовательность (bestPath).
-        // При этом bestScore обнуляем, чтобы пересчитать заново.
-        this.bestScore = Double.MAX_VALUE;
-        double bestScoreFound = computeBestScoreAndPath();
+        finalScore = (moves == 0) ? 0 : (double) sum / moves;
+        gameFinished = true;
+        saveReplay();
+        // Законченную партию продолжать нельзя: слот автосохранения удаляем,
+        // а закрытие окна на экране итога больше ничего не сохраняет
+        windowManager.discardAutosave(AUTOSAVE_SLOT);
+        windowManager.stage.setOnCloseRequest(null);
 
         long endTime = System.currentTimeMillis();
         int totalTimeSec = (int)((endTime - startTime) / 1000);
@@ -501,182 +691,334 @@ public class GameFieldManager {
         this.playerX = startX;
         this.playerY = startY;
 
-        showEndScreen(finalScore, bestScoreFound, totalTimeSec);
+        showEndScreen(finalScore, totalTimeSec);
+
+        if (bestPathResult != null && !bestPathResult.optimal) {
+            // Время поиска во время игры вышло раньше, чем оптимум доказан, — теперь ищем
+            // без этого предела, на всех ядрах, начиная с лучшего найденного
+            runBestPathSearch(new BestPathTask(searchBoard, searchBlocked, 0, bestPathResult));
+        }
+        if (bestPathTask != null) {
+            searchProgress.progressProperty().bind(bestPathTask.progressProperty());
+            bestPathTask.finishWithin(SEARCH_BUDGET_MILLIS);
+        } else if (bestPathResult != null) {
+            showBestScore(finalScore, bestPathResult);
+        } else {
+            // Поиск не запускался или был отменён — сравнивать не с чем
+            showSearchCancelled();
+        }
     }
 
-    // ------------------ РЕКУРСИВНЫЙ ПОИСК ЛУЧШЕГО ПУТИ ------------------
+    // ------------------ ФОНОВЫЙ ПОИСК ЛУЧШЕГО ПУТИ ------------------
 
     /**
-     * Рекурсивно ищем все пути. С учётом оптимизаций.
-     *
-     * @param costSoFar     набранная сумма очков
-     * @param stepsSoFar    количество сделанных шагов (стартовые считаем за 1)
-     * @param path          текущий маршрут (список координат)
-     * @param visitedLocal  локальный массив посещённых ячеек
-     * @param bestPathFound "выходной" список для хранения лучшего пути
-     */
-    private void backtrack(
-            int x,
-            int y,
-            int costSoFar,
-            int stepsSoFar,
-            List<int[]> path,
-            boolean[][] visitedLocal,
-            List<int[]> bestPathFound
-    ) {
-        // 1. Проверка границ
-        if (x < 0 || x >= fieldSize || y < 0 || y >= fieldSize) {
-            return;
-        }
-        // 2. Если уже посещали — выходим
-        if (visitedLocal[x][y]) {
-            return;
+     * Запускает перебор в фоне, как только известны поле, старт и финиш. Поиск идёт
+     * на снимке поля, пока игрок играет, в SEARCH_POOL и не дольше
+     * {@link #speculativeBudgetMillis()}, чтобы не отнимать у игры процессор.
+     * Без ограничения (в пределах SEARCH_BUDGET_MILLIS экрана итога) он идёт только
+     * после финиша (см. endGame).
+     */
+    private void startBestPathSearch() {
+        cancelBestPathSearch();
+        bestPathResult = null;
+        searchBoard = flattenField();
+        // В загруженной партии клетки, пройденные до сохранения, на поле — обычные
+        // пустые, но ходить в них нельзя: и поиск, и подсказка их обходят
+        searchBlocked = flattenVisited();
+        int start = startX * fieldSize + startY;
+        int end = endX * fieldSize + endY;
+        hintEngine = new HintEngine(new Board(fieldSize, searchBoard, start, end), searchBlocked, HINT_BUDGET_MILLIS);
+        trail.clear();
+        trail.add(start);
+
+        runBestPathSearch(new BestPathTask(searchBoard, searchBlocked, speculativeBudgetMillis(), null));
+    }
+
+    /**
+     * Время на поиск во время игры: растёт с числом клеток, но ограничено сверху.
+     */
+    private long speculativeBudgetMillis() {
+        return Math.min((long) fieldSize * fieldSize * SPECULATIVE_MILLIS_PER_CELL, SPECULATIVE_MAX_MILLIS);
+    }
+
+    /**
+     * Запускает task в отдельном потоке. FX-поток остаётся свободным,
+     * результат (или отмена) возвращается в него через обработчики Task.
+     */
+    private void runBestPathSearch(BestPathTask task) {
+        bestPathTask = task;
+
+        task.setOnSucceeded(e -> {
+            // Результат устаревшего поиска (например, после выхода в меню) игнорируем
+            if (task != bestPathTask) return;
+            bestPathTask = null;
+            bestPathResult = task.getValue();
+            bestPath = task.getBestPath();
+            hintEngine.offer(bestPathResult);
+            if (gameFinished) {
+                showBestScore(finalScore, bestPathResult);
+            }
+        });
+        task.setOnCancelled(e -> {
+            if (task != bestPathTask) return;
+            bestPathTask = null;
+            if (gameFinished) {
+                showSearchCancelled();
+            }
+        });
+        task.setOnFailed(e -> {
+            if (task != bestPathTask) return;
+            bestPathTask = null;
+            task.getException().printStackTrace();
+            if (gameFinished) {
+                showSearchCancelled();
+            }
+        });
+
+        Thread thread = new Thread(task, "best-path-search");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void toggleHint() {
+        hintMode = !hintMode;
+        if (hintMode) {
+            requestHint();
+        } else {
+            cancelHint();
+            clearHint();
         }
+    }
 
-        visitedLocal[x][y] = true;
-        path.add(new int[]{x, y});
-
-        // 3. Если дошли до финиша — обновляем лучший результат
-        if (x == endX && y == endY) {
-            double score = (stepsSoFar == 0)
-                    ? 0.0
-                    : (double) costSoFar / (double) stepsSoFar;
-
-            // Если нашли улучшение — запишем
-            if (score < this.bestScore && score != 0) {
-                this.bestScore = score;
-                bestPathFound.clear();
-                bestPathFound.addAll(path);
-                System.out.println(score);
+    /**
+     * Пересчитывает подсказку от текущей клетки в фоне; когда она готова,
+     * рамкой подсвечиваются клетки лучшего продолжения.
+     */
+    private void requestHint() {
+        if (hintEngine == null || gameFinished) return;
+        cancelHint();
+
+        int[] prefix = trail.stream().mapToInt(Integer::intValue).toArray();
+        HintEngine engine = hintEngine;
+        Task<PathResult> task = new Task<>() {
+            @Override
+            protected PathResult call() {
+                return engine.update(prefix);
             }
+        };
+        hintTask = task;
+        task.setOnSucceeded(e -> {
+            if (task != hintTask) return;
+            hintTask = null;
+            showHint(task.getValue(), prefix.length);
+        });
 
-            // Откат
-            visitedLocal[x][y] = false;
-            path.remove(path.size() - 1);
-            return;
+        Thread thread = new Thread(task, "hint-search");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Стирает рамки подсказки, перерисовав только обведённые клетки.
+     */
+    private void clearHint() {
+        for (int cell : hintCells) {
+            boardView.redrawCell(cell / fieldSize, cell % fieldSize);
         }
+        hintCells = new int[0];
+    }
 
-        // 4. «Простая» оценка, можно ли улучшить ratio.
-        //    Допустим, максимум клеток = fieldSize * fieldSize.
-        //    Тогда оставшиеся клетки (или шаги) максимум = (fieldSize * fieldSize) - stepsSoFar.
-        //    Даже если все они будут "бесплатными" (cost=0), то полученный ratio будет:
-        //         costSoFar / (stepsSoFar + оставшиеся)
-        //    Если это всё равно >= bestScore, то нет смысла углубляться дальше.
-        int maxStepsLeft = fieldSize * fieldSize - stepsSoFar;
-        double bestPossibleRatio = (stepsSoFar + maxStepsLeft > 0)
-                ? ((double) costSoFar / (stepsSoFar + maxStepsLeft))
-                : Double.MAX_VALUE;
-
-        if (bestPossibleRatio >= this.bestScore) {
-            // Прекращаем — в лучшем случае не станем лучше.
-            visitedLocal[x][y] = false;
-            path.remove(path.size() - 1);
-            return;
+    private void cancelHint() {
+        Task<PathResult> task = hintTask;
+        hintTask = null;
+        if (task != null) {
+            task.cancel();
         }
+    }
 
-        // 5. Значение текущей клетки (для подсчёта costSoFar)
-        int currentVal = field[x][y];
-        if (currentVal < 0) currentVal = 0;  // старт/финиш не дают очков
+    /**
+     * Подсвечивает продолжение пути (без текущей клетки) вместо предыдущей подсказки.
+     */
+    private void showHint(PathResult hint, int walked) {
+        if (!hintMode || bestPathMode || !hint.found()) return;
+        clearHint();
+        Color color = hint.optimal ? Color.GOLD : Color.ORANGE;
+        hintCells = Arrays.copyOfRange(hint.path, walked, hint.path.length);
+        for (int cell : hintCells) {
+            boardView.outlineCell(cell / fieldSize, cell % fieldSize, color);
+        }
+    }
 
-        // 6. Четыре направления
-        int[] dx = {-1, 1, 0, 0};
-        int[] dy = {0, 0, -1, 1};
+    /**
+     * Отменяет текущий поиск (если он идёт). Его результат больше не попадёт на экран.
+     */
+    private void cancelBestPathSearch() {
+        Task<PathResult> task = bestPathTask;
+        bestPathTask = null;
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Поле построчно в виде int[] — формат, который принимает {@link PathSolver}.
+     */
+    private int[] flattenField() {
+        int[] board = new int[fieldSize * fieldSize];
+        for (int i = 0; i < fieldSize; i++) {
+            System.arraycopy(field[i], 0, board, i * fieldSize, fieldSize);
+        }
+        return board;
+    }
 
-        for (int i = 0; i < 4; i++) {
-            int nx = x + dx[i];
-            int ny = y + dy[i];
+    /**
+     * Пройденные клетки visited[][] построчно, как поле в {@link #flattenField()}.
+     */
+    private boolean[] flattenVisited() {
+        boolean[] cells = new boolean[fieldSize * fieldSize];
+        for (int i = 0; i < fieldSize; i++) {
+            System.arraycopy(visited[i], 0, cells, i * fieldSize, fieldSize);
+        }
+        return cells;
+    }
 
-            // Посчитаем cost для следующего шага
-            int nextCost = costSoFar;
-            if (isValidCoord(nx, ny)) {
-                int val = (field[nx][ny] >= 1) ? field[nx][ny] : 0;
-                nextCost += val;
+    /**
+     * Обёртка над {@link PathSolver} для запуска вне FX-потока. Работает на копии поля,
+     * поэтому не трогает UI-состояние и не видит ходов игрока. Если поиск ограничен
+     * (budgetMillis или {@link #finishWithin}), по истечении возвращается лучший найденный
+     * путь (он может быть не доказанно лучшим).
+     */
+    private class BestPathTask extends Task<PathResult> {
+        private final PathSolver solver;
+        private final boolean speculative;
+        private List<int[]> bestPath = new ArrayList<>();
+
+        /**
+         * @param budgetMillis время на поиск во время игры (в SEARCH_POOL); 0 — поиск
+         *                     после финиша, на всех ядрах и без своего предела
+         * @param previous     результат прошлого поиска на этом поле: с его пути
+         *                     начинается перебор (или null)
+         */
+        BestPathTask(int[] board, boolean[] blocked, long budgetMillis, PathResult previous) {
+            this.solver = new PathSolver(board, fieldSize, startX * fieldSize + startY, endX * fieldSize + endY);
+            this.speculative = budgetMillis > 0;
+            solver.setBlocked(blocked);
+            if (previous != null) {
+                solver.setKnownPath(previous.path);
             }
+            solver.setProgressListener(done -> updateProgress(done, 1.0));
+            solver.setTimeBudget(budgetMillis);
+        }
 
-            // Рекурсивный вызов
-            backtrack(nx, ny, nextCost, stepsSoFar + 1, path, visitedLocal, bestPathFound);
+        void finishWithin(long millis) {
+            solver.finishWithin(millis);
         }
 
-        // 7. Откат
-        visitedLocal[x][y] = false;
-        path.remove(path.size() - 1);
+        List<int[]> getBestPath() {
+            return bestPath;
+        }
+
+        @Override
+        protected PathResult call() {
+            PathResult result = speculative
+                    ? solver.solveParallel(SEARCH_POOL)
+                    : solver.solveParallel(Runtime.getRuntime().availableProcessors());
+
+            List<int[]> path = new ArrayList<>();
+            for (int cell : result.path) {
+                path.add(new int[]{cell / fieldSize, cell % fieldSize});
+            }
+            bestPath = path;
+            return result;
+        }
+
+        @Override
+        protected void cancelled() {
+            solver.cancel();
+        }
     }
 
+    // ----------------------------------------------------------------------
+
     /**
-     * Запуск рекурсивного перебора. Возвращает лучший счёт (минимальный) или 9999.0,
-     * если пути нет. Также заполняет bestPath (список координат оптимального пути).
+     * Показываем экран итога: счёт игрока и время сразу, а на месте лучшего счёта —
+     * индикатор прогресса поиска с кнопкой отмены.
      */
-    private double computeBestScoreAndPath() {
-        System.out.println("Start computeBestScoreAndPath");
-        bestPath = new ArrayList<>();
+    private void showEndScreen(double finalScore, int totalTimeSec) {
+        Image background = ImageCache.get("/BG1.png");
+        endBackgroundView = new ImageView(background);
+        endBackgroundView.setFitWidth(WINDOW_SIZE);
+        endBackgroundView.setFitHeight(WINDOW_SIZE);
 
-        // Лучшее значение храним в this.bestScore — туда же будем записывать результат
-        // при нахождении лучших путей.
-        this.bestScore = Double.MAX_VALUE;
-        List<int[]> bestPathFound = new ArrayList<>();
+        ImageView playerScoreView = createScoreView((int) Math.round(finalScore));
+        playerScoreView.setTranslateY(0);
 
-        boolean[][] visitedLocal = new boolean[fieldSize][fieldSize];
+        ImageView timeView = createScoreView(totalTimeSec);
+        timeView.setTranslateY(180);
 
-        // Стартуем из (startX, startY)
-        backtrack(
-                startX,
-                startY,
-                0,
-                1,
-                new ArrayList<>(),
-                visitedLocal,
-                bestPathFound
-        );
+        // Пока идёт поиск — крутим индикатор на месте лучшего счёта
+        searchProgress = new ProgressIndicator();
+        searchProgress.setTranslateY(80);
+
+        cancelSearchButton = new Button("Cancel");
+        cancelSearchButton.setTranslateX(120);
+        cancelSearchButton.setTranslateY(80);
+        cancelSearchButton.setStyle("-fx-font-size: 16;");
+        cancelSearchButton.setOnAction(event -> {
+            cancelBestPathSearch();
+            showSearchCancelled();
+        });
 
-        // Если так и не нашли путь
-        if (this.bestScore == Double.MAX_VALUE) {
-            bestPath.clear();
-            return 9999.0;
+        Button toMenuButton = createImageButton("/toMenu.png");
+        toMenuButton.setOnAction(event -> goToMenu());
+
+        endButtons = new VBox(20, toMenuButton);
+        if (replay != null) {
+            // Кнопки в этом блоке уменьшены вдвое — шрифт вдвое больше обычного
+            Button replayButton = new Button("Watch replay");
+            replayButton.setStyle("-fx-font-size: 32;");
+            replayButton.setOnAction(event -> {
+                leaveGame();
+                windowManager.showReplay(replay);
+            });
+            endButtons.getChildren().add(replayButton);
         }
+        endButtons.setTranslateY(65);
+        endButtons.setTranslateX(320);
+        endButtons.setScaleX(0.5);
+        endButtons.setScaleY(0.5);
 
-        System.out.println("Best score is: " + bestScore);
-        bestPath = bestPathFound;
-        return this.bestScore;
+        // Очищаем root и собираем заново
+        root.getChildren().clear();
+        root.getChildren().addAll(endBackgroundView, playerScoreView, timeView,
+                searchProgress, cancelSearchButton, endButtons);
     }
 
-    // ----------------------------------------------------------------------
-
     /**
-     * Показываем экран победы/поражения и счёты.
+     * Поиск закончен: убираем индикатор, показываем WIN/LOSE, лучший счёт
+     * и кнопку показа лучшего пути. Если поиск упёрся в бюджет, счёт подписан
+     * как «лучший известный», а не доказанно лучший.
      */
-    private void showEndScreen(double finalScore, double bestScore, int totalTimeSec) {
-        Image background = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/BG1.png")));
-        ImageView backgroundView = new ImageView(background);
-        backgroundView.setFitWidth(WINDOW_SIZE);
-        backgroundView.setFitHeight(WINDOW_SIZE);
-        //Math.round(finalScore);
-        //Math.round(bestScore);
+    private void showBestScore(double finalScore, PathResult result) {
+        root.getChildren().removeAll(searchProgress, cancelSearchButton);
+
+        // Если так и не нашли путь
+        double bestScore = result.found() ? result.bestRatio : 9999.0;
 
         boolean isWin = (Double.compare(finalScore, bestScore) <= 0);
         System.out.println("Player score is: " + finalScore + ". Best score is: " + bestScore);
 
-        ImageView resultView = new ImageView(new Image(
-                Objects.requireNonNull(
-                        getClass().getResourceAsStream(isWin ? "/WIN.png" : "/LOST.png")
-                )));
+        ImageView resultView = new ImageView(ImageCache.get(isWin ? "/WIN.png" : "/LOST.png"));
         int temp = 2;
         resultView.setFitWidth(370/temp);
         resultView.setFitHeight(726/temp);
         resultView.setTranslateY(0);
         resultView.setTranslateX(-150);
 
-        ImageView playerScoreView = createScoreView((int) Math.round(finalScore));
-        playerScoreView.setTranslateY(0);
-
         ImageView bestScoreView = createScoreView((int) Math.round(bestScore));
         bestScoreView.setTranslateY(80);
 
-        ImageView timeView = createScoreView(totalTimeSec);
-        timeView.setTranslateY(180);
-
-        Button toMenuButton = createImageButton("/toMenu.png");
-        toMenuButton.setOnAction(event -> goToMenu());
-
         Button betterWayButton = createImageButton("/bestWay.png");
         // При нажатии показываем лучший путь
         betterWayButton.setOnAction(event -> {
@@ -687,9 +1029,9 @@ public class GameFieldManager {
             // Чтобы нельзя было ходить по полю
             bestPathMode = true;
 
-            // Очищаем root, показываем только фон, grid и кнопку «Return»
+            // Очищаем root, показываем только фон, поле и кнопку «Return»
             root.getChildren().clear();
-            root.getChildren().addAll(backgroundView, grid);
+            root.getChildren().addAll(endBackgroundView, boardPane);
 
             // Добавим кнопку «Return»
             Button returnButton = new Button("Return");
@@ -711,23 +1053,35 @@ public class GameFieldManager {
             // Запускаем мигание лучшего пути
             highlightBestPathBlink();
         });
+        endButtons.getChildren().add(betterWayButton);
 
-        VBox buttons = new VBox(20, toMenuButton, betterWayButton);
-        buttons.setTranslateY(65);
-        buttons.setTranslateX(320);
-        buttons.setScaleX(0.5);
-        buttons.setScaleY(0.5);
+        Label bestScoreLabel = new Label(result.optimal
+                ? "Proven best"
+                : String.format("Best known (optimum >= %.2f)", result.lowerBound));
+        bestScoreLabel.setStyle("-fx-text-fill: black; -fx-font-size: 16;");
+        bestScoreLabel.setTranslateY(130);
 
-        // Очищаем root и собираем заново
-        root.getChildren().clear();
-        root.getChildren().addAll(backgroundView, resultView, playerScoreView, bestScoreView, timeView, buttons);
+        root.getChildren().add(1, resultView);
+        root.getChildren().addAll(bestScoreView, bestScoreLabel);
+    }
+
+    /**
+     * Поиск отменён: лучший счёт неизвестен, сравнивать не с чем.
+     */
+    private void showSearchCancelled() {
+        root.getChildren().removeAll(searchProgress, cancelSearchButton);
+
+        Label cancelledLabel = new Label("Best path search cancelled");
+        cancelledLabel.setStyle("-fx-text-fill: black; -fx-font-size: 16;");
+        cancelledLabel.setTranslateY(80);
+        root.getChildren().add(cancelledLabel);
     }
 
     /**
      * Создаёт кнопку на основе картинки.
      */
     private Button createImageButton(String texturePath) {
-        Image image = new Image(Objects.requireNonNull(getClass().getResourceAsStream(texturePath)));
+        Image image = ImageCache.get(texturePath);
         ImageView imageView = new ImageView(image);
         Button button = new Button();
         button.setGraphic(imageView);
@@ -739,31 +1093,45 @@ public class GameFieldManager {
      * Формирует ImageView с «цифровым» отображением числа scoreValue (для счёта/времени).
      */
     private ImageView createScoreView(int scoreValue) {
-        HBox scoreTiles = new HBox(5);
-        scoreTiles.setStyle("-fx-background-color: transparent;");
-
-        String str = String.valueOf(scoreValue);
-        for (char c : str.toCharArray()) {
-            int digit = Character.getNumericValue(c);
-            if (digit < 0 || digit > 9) continue;
-
-            ImageView tileView = new ImageView(tiles);
-            tileView.setViewport(getDigitViewport(digit));
-            tileView.setFitWidth(tileSize);
-            tileView.setFitHeight(tileSize);
-            scoreTiles.getChildren().add(tileView);
-        }
-
-        SnapshotParameters params = new SnapshotParameters();
-        params.setFill(Color.TRANSPARENT);
-        return new ImageView(scoreTiles.snapshot(params, null));
+        return new ImageView(digits().render(scoreValue));
     }
 
     /**
      * Переход в главное меню.
      */
     private void goToMenu() {
-        windowManager.initialize(windowManager.stage);
+        leaveGame();
+        windowManager.showMenu();
+    }
+
+    /**
+     * Останавливает всё, что партия делает в фоне, перед уходом с её экрана.
+     */
+    private void leaveGame() {
+        if (puzzleTask != null) {
+            puzzleTask.cancel();
+            puzzleTask = null;
+        }
+        cancelBestPathSearch();
+        cancelHint();
+        windowManager.stopAutosave();
+        // Бесконечная анимация держала бы старую партию в памяти после выхода
+        if (blinkTimeline != null) blinkTimeline.stop();
+    }
+
+    /**
+     * Сохраняет запись законченной партии (для повтора из меню загрузки).
+     */
+    private void saveReplay() {
+        if (replayStart == null) return;
+        try {
+            replay = new Replay(replayStart, replayMoves.toByteArray());
+        } catch (IllegalArgumentException e) {
+            // Запись не сходится с правилами — повтор не показываем, партия от этого не страдает
+            e.printStackTrace();
+            return;
+        }
+        windowManager.saveReplay("game-" + SLOT_NAME_FORMAT.format(LocalDateTime.now()), replay);
     }
 
     /**
@@ -771,81 +1139,50 @@ public class GameFieldManager {
      * - Старт (startX,startY) отображаем как -1 (иконка игрока),
      * - Финиш (endX,endY) как -2 (иконка финиша),
      * - Промежуточные клетки пути мигают «цифра / обычная плитка».
+     * <p>
+     * Обе фазы рисуются один раз: «обычные плитки» — на самом поле, «цифры» —
+     * на отдельном прозрачном холсте поверх него. Кадр мигания только
+     * показывает или прячет этот холст, сколько бы клеток ни было в пути.
      */
     private void highlightBestPathBlink() {
-        // Обновим поле (grid) — в нём уже отключены клики
+        // Обновим поле — клики в режиме показа пути уже отключены
         updateGrid();
 
+        if (pathOverlay != null) {
+            boardPane.getChildren().remove(pathOverlay);
+        }
+        pathOverlay = new BoardCanvas(tiles, field, tileSize);
+        pathOverlay.setMouseTransparent(true);
+
+        for (int[] coords : bestPath) {
+            int bx = coords[0];
+            int by = coords[1];
+
+            if (bx == startX && by == startY) {
+                // старт
+                boardView.drawTile(bx, by, -1);
+                pathOverlay.drawTile(bx, by, -1);
+            } else if (bx == endX && by == endY) {
+                // финиш
+                boardView.drawTile(bx, by, -2);
+                pathOverlay.drawTile(bx, by, -2);
+            } else {
+                // промежуточная клетка — на поле то, что на ней сейчас (пройденные
+                // игроком клетки уже пустые), поверх — её очки со снимка поля,
+                // на котором искали путь
+                boardView.drawTile(bx, by, Math.max(field[bx][by], 0));
+                pathOverlay.drawTile(bx, by, searchBoard[bx * fieldSize + by]);
+            }
+        }
+        boardPane.getChildren().add(pathOverlay);
+
         blinkTimeline = new Timeline(
-                new KeyFrame(Duration.seconds(0.0), e -> {
-                    // Показываем цифры на всех клетках пути, кроме старт/финиш
-                    for (int[] coords : bestPath) {
-                        int bx = coords[0];
-                        int by = coords[1];
-                        StackPane sp = getCellFromGrid(bx, by);
-
-                        if (bx == startX && by == startY) {
-                            // старт
-                            sp.setStyle("-fx-background-color: transparent;");
-                            setCellViewport(sp, -1);
-                        } else if (bx == endX && by == endY) {
-                            // финиш
-                            sp.setStyle("-fx-background-color: transparent;");
-                            setCellViewport(sp, -2);
-                        } else {
-                            //TODO: fix it
-
-                            // промежуточная клетка — показываем "цифру"
-                            sp.setStyle("-fx-background-color: transparent;");
-                            int val = field[bx][by];
-                            // Если в исходном поле у нас 0 (или -1/-2),
-                            // можно показать хотя бы 1, чтобы что-то мигало
-                            setCellViewport(sp, (val > 0) ? val : 1);
-                        }
-                    }
-                }),
-                new KeyFrame(Duration.seconds(1.0), e -> {
-                    // Показываем «обычную плитку» для промежуточных
-                    for (int[] coords : bestPath) {
-                        int bx = coords[0];
-                        int by = coords[1];
-                        StackPane sp = getCellFromGrid(bx, by);
-
-                        if (bx == startX && by == startY) {
-                            setCellViewport(sp, -1);
-                        } else if (bx == endX && by == endY) {
-                            setCellViewport(sp, -2);
-                        } else {
-                            sp.setStyle("-fx-background-color: transparent;");
-                            // Показываем «текстуру» клетки
-                            int v = field[bx][by];
-                            if (v < 0) v = 0;
-                            setCellViewport(sp, v);
-                        }
-                    }
-                })
+                new KeyFrame(Duration.seconds(0.0), e -> pathOverlay.setVisible(true)),
+                new KeyFrame(Duration.seconds(1.0), e -> pathOverlay.setVisible(false))
         );
 
         blinkTimeline.setCycleCount(Timeline.INDEFINITE);
         blinkTimeline.setAutoReverse(true);
         blinkTimeline.play();
     }
-
-    /**
-     * Устанавливает в StackPane (ячейку) спрайт из tiles для заданного value.
-     */
-    private void setCellViewport(StackPane cell, int value) {
-        if (cell.getChildren().isEmpty()) return;
-        ImageView iv = (ImageView) cell.getChildren().get(0);
-        iv.setViewport(getFieldViewport(value));
-    }
-
-    private StackPane getCellFromGrid(int x, int y) {
-        for (Node node : grid.getChildren()) {
-            if (GridPane.getRowIndex(node) == x && GridPane.getColumnIndex(node) == y) {
-                return (StackPane) node;
-            }
-        }
-        return null;
-    }
 }
@@ -11,4 +11,25 @@ public class GameState {
     public int[][] field;
     public boolean[][] visited;
     public List<Integer> visitedValues = new ArrayList<>();
+
+    /**
+     * Независимая копия (массивы и список копируются).
+     */
+    public GameState copy() {
+        GameState copy = new GameState();
+        copy.fieldSize = fieldSize;
+        copy.playerX = playerX;
+        copy.playerY = playerY;
+        copy.endX = endX;
+        copy.endY = endY;
+        copy.moves = moves;
+        copy.field = new int[fieldSize][];
+        copy.visited = new boolean[fieldSize][];
+        for (int i = 0; i < fieldSize; i++) {
+            copy.field[i] = field[i].clone();
+            copy.visited[i] = visited[i].clone();
+        }
+        copy.visitedValues.addAll(visitedValues);
+        return copy;
+    }
 }
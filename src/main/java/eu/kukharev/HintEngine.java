@@ -0,0 +1,99 @@
+package eu.kukharev;
+
+import java.util.Arrays;
+
+/**
+ * Подсказка «лучший путь отсюда»: лучшее продолжение уже пройденного игроком пути
+ * до финиша (счёт — для пути целиком, как в конце игры).
+ * <p>
+ * Пересчитывать всё после каждого хода слишком долго, поэтому движок помнит
+ * последний найденный путь. Если игрок идёт по нему, то путь остаётся лучшим
+ * (любое лучшее продолжение было бы и лучшим путём раньше), и если тот был
+ * доказан — ответ готов без поиска. Если не доказан — поиск начинается с него
+ * и ищет только строго лучшие тем же решателем, с таблицей состояний прошлых
+ * поисков: её записи сделаны при счёте не лучше нынешнего и в поддереве, куда
+ * шагнул игрок, по-прежнему верны. Если игрок свернул, то старый поиск перебирал
+ * ветку, куда он свернул, с отсечениями по старому лучшему счёту, который
+ * здесь уже недостижим, — его таблицу и границы переиспользовать нельзя,
+ * и поиск идёт заново новым решателем.
+ * <p>
+ * Клетки, пройденные до начала подсказок (в загруженной партии — до сохранения),
+ * заняты: подсказка в них не заходит, как и игрок.
+ * <p>
+ * Каждый поиск ограничен бюджетом времени, так что ответ приходит не позже чем
+ * через него (возможно, не доказанно лучший — см. {@link PathResult#optimal}).
+ * Методы синхронизированы: пересчёт идёт в фоне, а найденные другим поиском
+ * пути приходят из FX-потока.
+ */
+public class HintEngine {
+    private final Board board;
+    private final boolean[] blocked;
+    private final long budgetMillis;
+    private PathResult known;
+    // Решатель (и его таблица) для поисков вдоль пути known
+    private PathSolver solver;
+
+    /**
+     * @param blocked занятые клетки (blocked[x * size + y]) или null, если таких нет
+     */
+    public HintEngine(Board board, boolean[] blocked, long budgetMillis) {
+        this.board = board;
+        this.blocked = blocked;
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Уже найденный где-то ещё путь (например, фоновым поиском от старта).
+     * Берётся, если он лучше того, что движок знает сейчас, или доказан, и не
+     * заходит в занятые клетки.
+     */
+    public synchronized void offer(PathResult result) {
+        if (result == null || !result.found() || entersBlocked(result.path)) return;
+        if (known == null || result.optimal || result.bestRatio < known.bestRatio) {
+            known = result;
+        }
+    }
+
+    /**
+     * Лучший путь (целиком, от старта), продолжающий prefix.
+     *
+     * @param prefix пройденные клетки от старта до текущей включительно
+     */
+    public synchronized PathResult update(int[] prefix) {
+        if (known != null && startsWith(known.path, prefix)) {
+            if (known.optimal) {
+                return known;
+            }
+        } else {
+            known = null;
+            solver = null;
+        }
+
+        if (solver == null) {
+            solver = board.newSolver();
+            solver.setBlocked(blocked);
+            solver.setTimeBudget(budgetMillis);
+            solver.setKeepTable(true);
+        }
+        solver.setPrefix(prefix);
+        solver.setKnownPath((known != null) ? known.path : null);
+        known = solver.solve();
+        return known;
+    }
+
+    /**
+     * Заходит ли путь в занятую клетку (старт и финиш не в счёт, как у {@link PathSolver}).
+     */
+    private boolean entersBlocked(int[] path) {
+        if (blocked == null) return false;
+        for (int i = 1; i < path.length; i++) {
+            if (blocked[path[i]] && path[i] != board.end) return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWith(int[] path, int[] prefix) {
+        return path.length >= prefix.length
+                && Arrays.equals(path, 0, prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -0,0 +1,66 @@
+package eu.kukharev;
+
+import javafx.scene.image.Image;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Общий кэш картинок из ресурсов: каждая декодируется один раз, и все сцены
+ * используют один и тот же объект Image (а не свою копию битмапа в куче).
+ * <p>
+ * {@link #preload()} при старте декодирует все картинки игры в фоновом потоке,
+ * пока показывается меню. Если сцене картинка нужна раньше, чем её успели
+ * декодировать, {@link #get(String)} дождётся именно этой загрузки, а не начнёт вторую.
+ */
+public final class ImageCache {
+    // Сначала то, что нужно меню, потом — остальным экранам
+    private static final String[] RESOURCES = {
+            "/BG1.png", "/SG.png", "/RULES.png", "/LOAD.png", "/EXIT.png",
+            "/tiles.png", "/BG2.png", "/toMenu.png", "/bestWay.png", "/WIN.png", "/LOST.png"
+    };
+
+    private static final Map<String, CompletableFuture<Image>> IMAGES = new ConcurrentHashMap<>();
+    private static final Executor LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-preload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ImageCache() {
+    }
+
+    /**
+     * Картинка из ресурсов (путь от корня, например "/BG1.png").
+     *
+     * @throws NullPointerException если такого ресурса нет
+     */
+    public static Image get(String path) {
+        CompletableFuture<Image> image = IMAGES.computeIfAbsent(path,
+                key -> CompletableFuture.completedFuture(load(key)));
+        try {
+            return image.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Запускает фоновое декодирование всех картинок игры (повторный вызов ничего не делает).
+     */
+    public static void preload() {
+        for (String path : RESOURCES) {
+            IMAGES.computeIfAbsent(path, key -> CompletableFuture.supplyAsync(() -> load(key), LOADER));
+        }
+    }
+
+    private static Image load(String path) {
+        return new Image(Objects.requireNonNull(ImageCache.class.getResourceAsStream(path)));
+    }
+}
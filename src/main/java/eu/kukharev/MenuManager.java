@@ -5,17 +5,26 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
 
-import java.util.Objects;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 /**
  * Менеджер главного меню игры.
  */
 public class MenuManager {
+    private static final DateTimeFormatter SLOT_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm").withZone(ZoneId.systemDefault());
+
     private final WindowManager windowManager;
 
     /**
@@ -32,7 +41,7 @@ public class MenuManager {
         StackPane root = new StackPane();
 
         // Фон
-        Image background = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/BG1.png")));
+        Image background = ImageCache.get("/BG1.png");
         ImageView backgroundView = new ImageView(background);
         backgroundView.setFitWidth(1000);
         backgroundView.setFitHeight(1000);
@@ -54,10 +63,10 @@ public class MenuManager {
         loadButton.setScaleY(0.25);
 
         // Обработчики
-        newGameButton.setOnAction(event -> goToNewGameSetup());
-        rulesButton.setOnAction(event -> showRules(root));
+        newGameButton.setOnAction(event -> windowManager.showNewGameSetup());
+        rulesButton.setOnAction(event -> windowManager.showRules());
         exitButton.setOnAction(event -> Platform.exit());
-        loadButton.setOnAction(event -> loadSavedGame());
+        loadButton.setOnAction(event -> windowManager.showLoadMenu());
 
         // Сетка для кнопок
         GridPane gridPane = new GridPane();
@@ -82,17 +91,69 @@ public class MenuManager {
         return new Scene(root, 1000, 1000);
     }
 
-    private void loadSavedGame() {
-        GameState loaded = windowManager.loadGameState();
-        if (loaded != null) {
+    /**
+     * Создаёт сцену выбора сохранения: по кнопке на слот (последние — сверху),
+     * под ними — записи законченных партий для повтора, и «Back».
+     */
+    public Scene createLoadScene(List<SaveStore.Slot> slots, List<String> replays) {
+        Image background = ImageCache.get("/BG1.png");
+        ImageView backgroundView = new ImageView(background);
+        backgroundView.setFitWidth(1000);
+        backgroundView.setFitHeight(1000);
+
+        VBox slotBox = new VBox(10);
+        slotBox.setAlignment(Pos.CENTER);
+        if (slots.isEmpty() && replays.isEmpty()) {
+            Text emptyLabel = new Text("No saved games");
+            emptyLabel.setStyle("-fx-font-size: 18; -fx-fill: black;");
+            slotBox.getChildren().add(emptyLabel);
+        }
+        for (SaveStore.Slot slot : slots) {
+            String date = SLOT_DATE_FORMAT.format(Instant.ofEpochMilli(slot.savedAtMillis));
+            Button slotButton = new Button(slot.name + "  —  " + slot.fieldSize + "x" + slot.fieldSize
+                    + ", " + slot.moves + " moves, " + date);
+            slotButton.setStyle("-fx-font-size: 16;");
+            slotButton.setOnAction(event -> loadSavedGame(slot.name));
+            slotBox.getChildren().add(slotButton);
+        }
+        if (!replays.isEmpty()) {
+            Text replaysLabel = new Text("Replays");
+            replaysLabel.setStyle("-fx-font-size: 18; -fx-fill: black;");
+            slotBox.getChildren().add(replaysLabel);
+        }
+        for (String replay : replays) {
+            Button replayButton = new Button(replay);
+            replayButton.setStyle("-fx-font-size: 16;");
+            replayButton.setOnAction(event -> windowManager.showReplay(replay));
+            slotBox.getChildren().add(replayButton);
+        }
+
+        ScrollPane scrollPane = new ScrollPane(slotBox);
+        scrollPane.setFitToWidth(true);
+        scrollPane.setMaxSize(600, 500);
+        scrollPane.setStyle("-fx-background-color: transparent; -fx-background: transparent;");
+
+        Button backButton = new Button("Back");
+        backButton.setStyle("-fx-font-size: 16;");
+        backButton.setOnAction(event -> windowManager.showMenu());
+
+        VBox menuBox = new VBox(20, scrollPane, backButton);
+        menuBox.setAlignment(Pos.CENTER);
+
+        StackPane root = new StackPane(backgroundView, menuBox);
+        return new Scene(root, 1000, 1000);
+    }
+
+    private void loadSavedGame(String slot) {
+        windowManager.loadGameState(slot, loaded -> {
             // Создаём GameFieldManager с готовым состоянием
             GameFieldManager manager = new GameFieldManager(windowManager, loaded);
             windowManager.setScene(manager.createGameSceneFromState(loaded));
-        }
+        });
     }
 
     private Button createImageButton(String texturePath) {
-        Image image = new Image(Objects.requireNonNull(getClass().getResourceAsStream(texturePath)));
+        Image image = ImageCache.get(texturePath);
         ImageView imageView = new ImageView(image);
         Button button = new Button();
         button.setGraphic(imageView);
@@ -101,25 +162,17 @@ public class MenuManager {
     }
 
     /**
-     * Показываем правила игры (смена фона).
+     * Создаёт сцену правил игры (картинка с правилами на весь экран).
      */
-    private void showRules(StackPane root) {
-        Image background = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/BG2.png")));
+    public Scene createRulesScene() {
+        Image background = ImageCache.get("/BG2.png");
         ImageView backgroundView = new ImageView(background);
         backgroundView.setFitWidth(1000);
         backgroundView.setFitHeight(1000);
 
-        root.getChildren().clear();
-        root.getChildren().add(backgroundView);
+        StackPane root = new StackPane(backgroundView);
         // Возврат в меню по клику
-        root.setOnMouseClicked(event -> windowManager.initialize(windowManager.stage));
-    }
-
-    /**
-     * Переход к сцене настроек новой игры.
-     */
-    private void goToNewGameSetup() {
-        NewGameSetupManager setupManager = new NewGameSetupManager(windowManager);
-        windowManager.setScene(setupManager.createSetupScene());
+        root.setOnMouseClicked(event -> windowManager.showMenu());
+        return new Scene(root, 1000, 1000);
     }
 }
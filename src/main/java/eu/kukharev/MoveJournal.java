@@ -0,0 +1,116 @@
+package eu.kukharev;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Журнал ходов для автосохранения: к снимку партии ({@link SaveFile}) дописывается
+ * по байту на ход — направление шага. Ход стоит одной записи в конец файла, сколько
+ * бы ни было клеток на поле; полный снимок пишется только при уплотнении.
+ * <p>
+ * Формат (little-endian):
+ * <pre>
+ * заголовок: int magic, short version, short 0, int CRC32 снимка
+ * записи:    byte направление (UP, DOWN, LEFT, RIGHT)
+ * </pre>
+ * CRC связывает журнал с его снимком. Если снимок уже заменён новым (уплотнение
+ * прошло, а журнал ещё не начат заново), CRC не совпадёт и журнал не применится —
+ * все его ходы и так есть в новом снимке.
+ */
+public final class MoveJournal {
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    static final int HEADER_BYTES = 12;
+    private static final int MAGIC = 0x4A4E4456; // "VDNJ"
+    private static final short VERSION = 1;
+    // Смещения по строке (x) и столбцу (y) для каждого направления
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    private MoveJournal() {
+    }
+
+    /**
+     * Направление шага из (fromX, fromY) в соседнюю клетку (toX, toY).
+     */
+    public static int direction(int fromX, int fromY, int toX, int toY) {
+        for (int direction = 0; direction < DX.length; direction++) {
+            if (toX - fromX == DX[direction] && toY - fromY == DY[direction]) {
+                return direction;
+            }
+        }
+        throw new IllegalArgumentException("Not a neighbouring cell: (" + fromX + ";" + fromY
+                + ") -> (" + toX + ";" + toY + ")");
+    }
+
+    /**
+     * Заголовок нового журнала для снимка с контрольной суммой snapshotChecksum.
+     */
+    static ByteBuffer header(int snapshotChecksum) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(snapshotChecksum);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Применяет к state ходы из журнала journal, если он записан для этого снимка.
+     * Запись, оборванная на середине, или ход, который по правилам невозможен
+     * (мусор в конце файла), завершают воспроизведение.
+     *
+     * @return сколько ходов применено (-1 — журнал не от этого снимка)
+     */
+    static int replay(GameState state, ByteBuffer journal, int snapshotChecksum) throws IOException {
+        ByteBuffer buffer = journal.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a move journal");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported journal version " + buffer.getShort(4));
+        }
+        if (buffer.getInt(8) != snapshotChecksum) {
+            return -1;
+        }
+
+        int applied = 0;
+        for (int at = HEADER_BYTES; at < buffer.limit(); at++) {
+            int direction = buffer.get(at);
+            if (!apply(state, direction)) break;
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Ход игрока в направлении direction по тем же правилам, что и клик в GameFieldManager.
+     *
+     * @return false (и state не меняется), если ход невозможен
+     */
+    static boolean apply(GameState state, int direction) {
+        if (direction < 0 || direction >= DX.length) return false;
+        int n = state.fieldSize;
+        int x = state.playerX + DX[direction];
+        int y = state.playerY + DY[direction];
+        boolean finished = !state.visitedValues.isEmpty()
+                && state.visitedValues.get(state.visitedValues.size() - 1) == -2;
+        if (finished || x < 0 || x >= n || y < 0 || y >= n || state.visited[x][y]) {
+            return false;
+        }
+        state.visited[state.playerX][state.playerY] = true;
+        state.visitedValues.add(state.field[x][y]);
+        state.moves++;
+        // На финише игрок не сдвигается: партия окончена
+        if (state.field[x][y] == -2) {
+            return true;
+        }
+        state.field[state.playerX][state.playerY] = 0;
+        state.playerX = x;
+        state.playerY = y;
+        state.field[x][y] = -1;
+        return true;
+    }
+}
@@ -7,7 +7,6 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
-import java.util.Objects;
 import java.util.Random;
 
 /**
@@ -17,6 +16,7 @@ public class NewGameSetupManager {
     private final WindowManager windowManager;
     private int selectedFieldSize = 5;
     private boolean manualPlacement = true; // по умолчанию — ручная расстановка
+    private PuzzleGenerator.Difficulty selectedDifficulty = PuzzleGenerator.Difficulty.ANY;
 
     /**
      * @param windowManager Менеджер окон
@@ -32,7 +32,7 @@ public class NewGameSetupManager {
         StackPane root = new StackPane();
 
         // Фон
-        Image background = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/BG1.png")));
+        Image background = ImageCache.get("/BG1.png");
         ImageView backgroundView = new ImageView(background);
         backgroundView.setFitWidth(1000);
         backgroundView.setFitHeight(1000);
@@ -50,12 +50,28 @@ public class NewGameSetupManager {
         sizeLabel.setStyle("-fx-font-size: 18; -fx-fill: black;");
 
         ComboBox<Integer> sizeSelector = new ComboBox<>();
-        sizeSelector.getItems().addAll(3, 4, 5, 6, 7, 8, 9, 10);
+        // Поле рисуется на холсте, так что доступны и большие размеры;
+        // лучший путь для них ищется с ограничением по времени (см. GameFieldManager)
+        sizeSelector.getItems().addAll(3, 4, 5, 6, 7, 8, 9, 10, 15, 20, 30, 50, 100);
         sizeSelector.setValue(selectedFieldSize);
-        sizeSelector.setOnAction(event -> selectedFieldSize = sizeSelector.getValue());
 
         fieldSizeBox.getChildren().addAll(sizeLabel, sizeSelector);
 
+        // Сложность поля (для полей до PuzzleGenerator.MAX_SIZE)
+        HBox difficultyBox = new HBox(10);
+        Text difficultyLabel = new Text("Difficulty:");
+        difficultyLabel.setStyle("-fx-font-size: 18; -fx-fill: black;");
+
+        ComboBox<PuzzleGenerator.Difficulty> difficultySelector = new ComboBox<>();
+        difficultySelector.getItems().addAll(PuzzleGenerator.Difficulty.values());
+        difficultySelector.setValue(selectedDifficulty);
+        difficultySelector.setOnAction(event -> selectedDifficulty = difficultySelector.getValue());
+
+        Text difficultyNote = new Text("(boards up to " + PuzzleGenerator.MAX_SIZE + "x" + PuzzleGenerator.MAX_SIZE + ")");
+        difficultyNote.setStyle("-fx-font-size: 14; -fx-fill: black;");
+
+        difficultyBox.getChildren().addAll(difficultyLabel, difficultySelector, difficultyNote);
+
         // Радиокнопки
         ToggleGroup placementGroup = new ToggleGroup();
         RadioButton manualButton = new RadioButton("Manual start/end");
@@ -65,30 +81,57 @@ public class NewGameSetupManager {
         RadioButton randomButton = new RadioButton("Random start/end");
         randomButton.setToggleGroup(placementGroup);
 
-        manualButton.setOnAction(e -> manualPlacement = true);
-        randomButton.setOnAction(e -> manualPlacement = false);
+        // Для больших полей сложность не подбирается — выбор недоступен, а не молча игнорируется
+        // (при случайной расстановке размер выбирается так, чтобы сложность подходила)
+        Runnable updateDifficulty = () -> difficultySelector.setDisable(!difficultyApplies());
+        sizeSelector.setOnAction(event -> {
+            selectedFieldSize = sizeSelector.getValue();
+            updateDifficulty.run();
+        });
+        manualButton.setOnAction(e -> {
+            manualPlacement = true;
+            updateDifficulty.run();
+        });
+        randomButton.setOnAction(e -> {
+            manualPlacement = false;
+            updateDifficulty.run();
+        });
+        updateDifficulty.run();
 
         Button startButton = new Button("Start Game");
         startButton.setStyle("-fx-font-size: 16;");
         startButton.setOnAction(e -> startGame());
 
-        menuBox.getChildren().addAll(label, fieldSizeBox, manualButton, randomButton, startButton);
+        menuBox.getChildren().addAll(label, fieldSizeBox, difficultyBox, manualButton, randomButton, startButton);
 
         root.getChildren().addAll(backgroundView, menuBox);
         return new Scene(root, 1000, 1000);
     }
 
+    /**
+     * Применима ли выбранная сложность: при ручной расстановке — только к полям
+     * до PuzzleGenerator.MAX_SIZE, при случайной — всегда (размер подстраивается).
+     */
+    private boolean difficultyApplies() {
+        return !manualPlacement || selectedFieldSize <= PuzzleGenerator.MAX_SIZE;
+    }
+
     private void startGame() {
-        // Если пользователь выбрал «случайную расстановку», выбираем случайный размер
+        // Если пользователь выбрал «случайную расстановку», выбираем случайный размер.
+        // Выбор в списке не трогаем: сцена настроек переиспользуется и должна показывать его
+        int fieldSize = selectedFieldSize;
         if (!manualPlacement) {
+            // С выбранной сложностью — только размеры, для которых она подбирается
+            int maxSize = (selectedDifficulty == PuzzleGenerator.Difficulty.ANY) ? 10 : PuzzleGenerator.MAX_SIZE;
             Random rnd = new Random();
-            selectedFieldSize = rnd.nextInt(8) + 3; // [3..10]
+            fieldSize = rnd.nextInt(maxSize - 2) + 3; // [3..maxSize]
         }
 
         GameFieldManager gameFieldManager = new GameFieldManager(
                 windowManager,
-                selectedFieldSize,
-                manualPlacement
+                fieldSize,
+                manualPlacement,
+                difficultyApplies() ? selectedDifficulty : PuzzleGenerator.Difficulty.ANY
         );
         windowManager.setScene(gameFieldManager.createGameScene());
     }
@@ -0,0 +1,46 @@
+package eu.kukharev;
+
+/**
+ * Результат поиска лучшего пути (см. {@link PathSolver}).
+ */
+public class PathResult {
+    /** Лучший (минимальный) счёт: сумма очков / число шагов. Double.MAX_VALUE, если пути нет. */
+    public final double bestRatio;
+    /** Клетки лучшего пути (индекс = x * size + y), от старта до финиша включительно. */
+    public final int[] path;
+    /** Оптимальный счёт не меньше этого значения. Если поиск перебрал всё — равно bestRatio. */
+    public final double lowerBound;
+    /** true, если bestRatio доказанно оптимален (перебор не был прерван бюджетом или граница его подтвердила). */
+    public final boolean optimal;
+    /** Сколько узлов дерева перебора было посещено. */
+    public final long nodesExplored;
+    /** Время поиска в наносекундах. */
+    public final long elapsedNanos;
+
+    public PathResult(double bestRatio, int[] path, double lowerBound, boolean optimal,
+                      long nodesExplored, long elapsedNanos) {
+        this.bestRatio = bestRatio;
+        this.path = path;
+        this.lowerBound = lowerBound;
+        this.optimal = optimal;
+        this.nodesExplored = nodesExplored;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return true, если путь от старта до финиша найден
+     */
+    public boolean found() {
+        return path.length > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PathResult{ratio=" + bestRatio
+                + ", length=" + path.length
+                + ", lowerBound=" + lowerBound
+                + ", optimal=" + optimal
+                + ", nodes=" + nodesExplored
+                + ", ms=" + elapsedNanos / 1_000_000 + "}";
+    }
+}
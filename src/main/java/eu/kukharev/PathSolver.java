@@ -0,0 +1,1019 @@
+package eu.kukharev;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Поиск лучшего пути от старта до финиша (минимум суммы очков на число шагов).
+ * <p>
+ * Не зависит от JavaFX: на вход — поле в виде int[] (построчно, size * size),
+ * на выход — {@link PathResult}. Поэтому его можно гонять в бенчмарках, пачкой
+ * и в нескольких потоках одновременно (один экземпляр — один поиск за раз).
+ * <p>
+ * Значения клеток: 1..9 — очки, 0 — пустая, -1 — старт/игрок, -2 — финиш.
+ * Отрицательные и нулевые клетки очков не дают.
+ * <p>
+ * Внутри клетка — это индекс x * size + y, свободные клетки — битовая маска
+ * (long[]: одно слово для полей до 8x8, два — для 9x9 и 10x10), путь — стек int[].
+ * В горячем цикле перебора нет ни одного выделения памяти.
+ * <p>
+ * «Свободные» — это не просто непосещённые клетки, а связная область, из которой
+ * ещё достижим финиш. Куски поля, отрезанные путём от финиша, из неё выбрасываются:
+ * туда нет смысла ходить, и их очки не участвуют в оценке снизу.
+ * <p>
+ * Одно и то же состояние (клетка + свободные клетки) часто достигается разными
+ * порядками ходов; уже разобранные состояния хранит {@link TranspositionTable}.
+ * <p>
+ * Поиск можно ограничить по времени и по числу узлов ({@link #setTimeBudget},
+ * {@link #setNodeBudget}). Тогда по исчерпании бюджета он возвращает лучший путь,
+ * найденный к этому моменту, и нижнюю границу оптимума по ещё не разобранным веткам.
+ * <p>
+ * Поиск можно продолжить с середины: {@link #setPrefix} задаёт уже пройденную часть
+ * пути, {@link #setKnownPath} — уже известный путь, с которого начинается сравнение,
+ * {@link #setBlocked} — клетки, пройденные раньше (например, до сохранения партии).
+ */
+public class PathSolver {
+    // Глубина, до которой учитываем долю дерева перебора для прогресса
+    private static final int PROGRESS_DEPTH = 6;
+    // Как часто (в узлах) проверяем отмену
+    private static final int CANCEL_CHECK_MASK = 0x3FF;
+    // В параллельном режиме дерево делится на задачи по первым ходам (до этой глубины)
+    private static final int SPLIT_DEPTH = 6;
+    // Максимальные очки клетки (значения 1..9)
+    private static final int MAX_CELL_VALUE = 9;
+    // Направления в порядке перебора: вверх, вниз, влево, вправо
+    private static final int DIRECTIONS = 4;
+    // Кольцо из 8 клеток вокруг: N, NE, E, SE, S, SW, W, NW
+    private static final int RING = 8;
+    // Число групп свободных соседей для каждой маски кольца (см. ringGroups)
+    private static final byte[] RING_GROUPS = new byte[1 << RING];
+    // Бюджет памяти таблицы состояний по умолчанию
+    public static final long DEFAULT_TABLE_BYTES = 32L << 20;
+    // Маленькие поддеревья дешевле перебрать, чем лезть за ними в таблицу
+    private static final int MIN_TABLE_FREE = 16;
+    // Сколько глубин отката отсечений выделять сразу (дальше массивы растут)
+    private static final int INITIAL_SAVED_DEPTHS = 128;
+    // Фиксированное зерно Zobrist-ключей: результаты воспроизводимы от запуска к запуску
+    private static final long ZOBRIST_SEED = 0x5EED_2B0A_4DL;
+
+    static {
+        for (int mask = 0; mask < RING_GROUPS.length; mask++) {
+            RING_GROUPS[mask] = (byte) ringGroups(mask);
+        }
+    }
+
+    private final int size;
+    private final int cells;
+    private final int words;
+    private final int start;
+    private final int end;
+
+    // Предрасчёт по клеткам
+    private final int[] cost;          // очки за шаг в клетку (0..9)
+    private final int[] neighbors;     // neighbors[cell * 4 + dir] — соседняя клетка или -1 за краем
+    private final int[] ring;          // ring[cell * 8 + k] — клетка кольца вокруг или -1 за краем
+    private final int[] distanceToEnd; // манхэттенское расстояние до финиша
+    private final long[] freeKeys;     // Zobrist-ключ клетки в маске свободных
+    private final long[] headKeys;     // Zobrist-ключ клетки, где стоит путь
+    private final long[] notFirstColumn; // маски клеток не в первом / не в последнем столбце
+    private final long[] notLastColumn;
+
+    private DoubleConsumer progressListener;
+    private volatile boolean cancelled;
+    private long tableBytes = DEFAULT_TABLE_BYTES;
+    private boolean keepTable;
+    private long timeBudgetNanos;
+    private long nodeBudget;
+    private int[] prefix;
+    private int[] knownPath;
+    private boolean[] blocked;
+
+    // Состояние текущего поиска (общее для всех потоков)
+    private final AtomicReference<Incumbent> best = new AtomicReference<>();
+    private final DoubleAdder progressDone = new DoubleAdder();
+    private final LongAdder nodes = new LongAdder();
+    private int splitDepth;
+    private int rootSteps;
+    private TranspositionTable table;
+    // Бюджет поиска: момент, после которого останавливаемся (если hasDeadline),
+    // и флаг «бюджет исчерпан»
+    private volatile long deadlineNanos;
+    private volatile boolean hasDeadline;
+    private volatile boolean exhausted;
+    // Минимум оценок снизу по веткам, брошенным из-за бюджета
+    private final DoubleAccumulator frontier = new DoubleAccumulator(Math::min, Double.MAX_VALUE);
+
+    /**
+     * @param board поле построчно: board[x * size + y]
+     * @param size  размер стороны поля
+     * @param start индекс клетки старта
+     * @param end   индекс клетки финиша
+     */
+    public PathSolver(int[] board, int size, int start, int end) {
+        if (board.length != size * size) {
+            throw new IllegalArgumentException("Board length " + board.length + " does not match size " + size);
+        }
+        if (start < 0 || start >= board.length || end < 0 || end >= board.length) {
+            throw new IllegalArgumentException("Start/end outside of the board");
+        }
+        this.size = size;
+        this.cells = size * size;
+        this.words = (cells + 63) >>> 6;
+        this.start = start;
+        this.end = end;
+
+        this.cost = new int[cells];
+        this.neighbors = new int[cells * DIRECTIONS];
+        this.ring = new int[cells * RING];
+        this.distanceToEnd = new int[cells];
+        this.freeKeys = new long[cells];
+        this.headKeys = new long[cells];
+        this.notFirstColumn = new long[words];
+        this.notLastColumn = new long[words];
+        SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+        int endX = end / size;
+        int endY = end % size;
+        int[] ringDx = {-1, -1, 0, 1, 1, 1, 0, -1};
+        int[] ringDy = {0, 1, 1, 1, 0, -1, -1, -1};
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cell / size;
+            int y = cell % size;
+            cost[cell] = Math.max(board[cell], 0);
+            distanceToEnd[cell] = Math.abs(x - endX) + Math.abs(y - endY);
+            freeKeys[cell] = random.nextLong();
+            headKeys[cell] = random.nextLong();
+            if (y > 0) notFirstColumn[cell >>> 6] |= 1L << cell;
+            if (y < size - 1) notLastColumn[cell >>> 6] |= 1L << cell;
+            neighbors[cell * DIRECTIONS]     = (x > 0)        ? cell - size : -1;
+            neighbors[cell * DIRECTIONS + 1] = (x < size - 1) ? cell + size : -1;
+            neighbors[cell * DIRECTIONS + 2] = (y > 0)        ? cell - 1    : -1;
+            neighbors[cell * DIRECTIONS + 3] = (y < size - 1) ? cell + 1    : -1;
+
+            for (int k = 0; k < RING; k++) {
+                int rx = x + ringDx[k];
+                int ry = y + ringDy[k];
+                ring[cell * RING + k] = (rx >= 0 && rx < size && ry >= 0 && ry < size) ? rx * size + ry : -1;
+            }
+        }
+    }
+
+    /**
+     * Слушатель прогресса (0..1). Вызывается из потока, в котором идёт поиск
+     * (в параллельном режиме — из рабочих потоков пула).
+     */
+    public void setProgressListener(DoubleConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Бюджет памяти таблицы уже разобранных состояний (0 — не использовать).
+     * Таблица создаётся на каждый поиск (см. {@link #setKeepTable}) и не больше,
+     * чем нужно для этого поля.
+     */
+    public void setTableBudget(long bytes) {
+        this.tableBytes = bytes;
+    }
+
+    /**
+     * Оставлять таблицу состояний следующему {@link #solve()} этого решателя, а не
+     * создавать новую. Годится, пока каждый следующий поиск начинает с известным
+     * счётом не хуже прежнего (например, префикс удлинился по найденному пути): запись
+     * говорит «отсюда с не лучшим приходом всё уже перебрано или отсечено по счёту,
+     * который не лучше нынешнего», и это остаётся верным. Приходы, перебор которых
+     * оборвал бюджет, из таблицы удаляются. Параллельный поиск таблицу не оставляет.
+     */
+    public void setKeepTable(boolean keepTable) {
+        this.keepTable = keepTable;
+        if (!keepTable) {
+            table = null;
+        }
+    }
+
+    /**
+     * Уже пройденная часть пути: prefix[0] — старт, дальше соседние клетки без повторов.
+     * Поиск продолжается из последней клетки, клетки префикса заняты, а счёт считается
+     * для пути целиком (префикс + продолжение); в результат тоже попадает весь путь.
+     * null — искать от старта.
+     *
+     * @throws IllegalArgumentException если это не путь от старта
+     */
+    public void setPrefix(int[] prefix) {
+        if (prefix != null) {
+            if (prefix.length == 0 || prefix[0] != start) {
+                throw new IllegalArgumentException("Prefix must begin at the start cell");
+            }
+            boolean[] seen = new boolean[cells];
+            for (int i = 0; i < prefix.length; i++) {
+                int cell = prefix[i];
+                if (cell < 0 || cell >= cells || seen[cell]
+                        || (i > 0 && distance(prefix[i - 1], cell) != 1)
+                        || (cell == end && i != prefix.length - 1)) {
+                    throw new IllegalArgumentException("Prefix is not a path at index " + i);
+                }
+                seen[cell] = true;
+            }
+        }
+        this.prefix = (prefix == null) ? null : prefix.clone();
+    }
+
+    /**
+     * Уже известный полный путь от старта до финиша (продолжающий префикс, если он задан):
+     * поиск начинает с его счёта и ищет только строго лучшие. null — начинать с нуля.
+     */
+    public void setKnownPath(int[] path) {
+        this.knownPath = (path == null) ? null : path.clone();
+    }
+
+    /**
+     * Клетки, в которые ходить нельзя: blocked[x * size + y] (например, visited[][]
+     * загруженной партии — игрок прошёл их до сохранения, а на поле это обычные
+     * пустые клетки). Старт, клетки префикса и финиш не блокируются.
+     * null — все клетки доступны.
+     */
+    public void setBlocked(boolean[] blocked) {
+        if (blocked != null && blocked.length != cells) {
+            throw new IllegalArgumentException("Blocked mask length " + blocked.length + " does not match the board");
+        }
+        this.blocked = (blocked == null) ? null : blocked.clone();
+    }
+
+    /**
+     * Ограничение по времени на один поиск (0 — без ограничения).
+     * Проверяется не на каждом узле, так что поиск может немного его превысить.
+     */
+    public void setTimeBudget(long millis) {
+        this.timeBudgetNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Ограничивает время уже идущего (или следующего) поиска: он закончится не позже
+     * чем через millis от текущего момента. Можно вызывать из любого потока — например,
+     * когда фоновый поиск, запущенный без бюджета, вдруг понадобился прямо сейчас.
+     */
+    public void finishWithin(long millis) {
+        deadlineNanos = System.nanoTime() + millis * 1_000_000L;
+        hasDeadline = true;
+    }
+
+    /**
+     * Ограничение по числу узлов на один поиск (0 — без ограничения).
+     * Как и время, проверяется раз в несколько сотен узлов.
+     */
+    public void setNodeBudget(long nodes) {
+        this.nodeBudget = nodes;
+    }
+
+    /**
+     * Просит прервать поиск. Можно вызывать из любого потока;
+     * {@link #solve()} тогда бросит CancellationException.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Перебор с отсечениями в текущем потоке. Без бюджета — полный, и результат
+     * всегда оптимален; с бюджетом — см. {@link PathResult#optimal}.
+     *
+     * @throws CancellationException если поиск был отменён через {@link #cancel()}
+     */
+    public PathResult solve() {
+        long startNanos = System.nanoTime();
+        reset(0, startNanos);
+
+        try {
+            rootSearch().run(rootCell(), rootCost(), rootSteps, 1.0);
+        } catch (CancellationException e) {
+            // В таблице остались приходы, перебор которых оборван
+            table = null;
+            throw e;
+        }
+
+        return toResult(startNanos);
+    }
+
+    /**
+     * Тот же перебор, но на нескольких потоках (fork/join с work stealing).
+     * Дерево делится на задачи по первым ходам от старта, а лучший найденный счёт
+     * общий для всех задач, так что найденный одним потоком путь сразу отсекает
+     * ветки в остальных. Оптимум совпадает с {@link #solve()}; при равных счётах
+     * может вернуться другой путь с тем же счётом.
+     *
+     * @param parallelism число потоков
+     * @throws CancellationException если поиск был отменён через {@link #cancel()}
+     */
+    public PathResult solveParallel(int parallelism) {
+        if (parallelism <= 1) {
+            return solve();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return solveParallel(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * То же, что {@link #solveParallel(int)}, но в пуле вызывающего: пул не закрывается
+     * и может быть общим для многих поисков (например, фоновые потоки с низким приоритетом).
+     *
+     * @throws CancellationException если поиск был отменён через {@link #cancel()}
+     */
+    public PathResult solveParallel(ForkJoinPool pool) {
+        long startNanos = System.nanoTime();
+        reset(SPLIT_DEPTH, startNanos);
+
+        try {
+            Search root = rootSearch();
+            pool.invoke(new SubtreeTask(rootCell(), rootCost(), rootSteps, root.free, root.path, root.depth, 1.0));
+        } catch (CancellationException e) {
+            // ForkJoinPool может перебросить копию исключения — отдадим своё
+            throw new CancellationException();
+        }
+
+        return toResult(startNanos);
+    }
+
+    /**
+     * Сколько несвязанных между собой групп свободных соседей (N, E, S, W) в маске
+     * кольца из 8 клеток. Соседи N и E связаны, если свободен и угол NE между ними,
+     * и так далее по кругу. 0 — тупик, 1 — область осталась связной,
+     * больше — возможно, разрезана.
+     */
+    private static int ringGroups(int mask) {
+        int sides = 0;
+        int links = 0;
+        for (int k = 0; k < RING; k += 2) {
+            if ((mask & (1 << k)) == 0) continue;
+            sides++;
+            int corner = k + 1;
+            int nextSide = (k + 2) % RING;
+            if ((mask & (1 << corner)) != 0 && (mask & (1 << nextSide)) != 0) links++;
+        }
+        return (sides == 4 && links == 4) ? 1 : sides - links;
+    }
+
+    /**
+     * Маска «все клетки поля свободны».
+     */
+    private long[] allCells() {
+        long[] mask = new long[words];
+        for (int cell = 0; cell < cells; cell++) {
+            mask[cell >>> 6] |= 1L << cell;
+        }
+        return mask;
+    }
+
+    private void reset(int splitDepth, long startNanos) {
+        this.rootSteps = (prefix == null) ? 1 : prefix.length;
+        // Глубины разбиения на задачи и учёта прогресса отсчитываем от корня поиска
+        this.splitDepth = (splitDepth > 0) ? splitDepth + rootSteps - 1 : 0;
+        if (timeBudgetNanos > 0) {
+            this.deadlineNanos = startNanos + timeBudgetNanos;
+            this.hasDeadline = true;
+        }
+        this.exhausted = false;
+        frontier.reset();
+        if (table == null || !keepTable || splitDepth > 0) {
+            int entries = (cells <= TranspositionTable.MAX_STEPS) ? TranspositionTable.entriesFor(tableBytes, cells) : 0;
+            this.table = (entries > 0) ? new TranspositionTable(entries) : null;
+        }
+        best.set(new Incumbent(Double.MAX_VALUE, new int[0]));
+        if (knownPath != null && knownPath.length > 0 && !entersBlocked(knownPath)) {
+            int sum = 0;
+            for (int cell : knownPath) {
+                sum += cost[cell];
+            }
+            if (sum > 0) {
+                best.set(new Incumbent((double) sum / knownPath.length, knownPath.clone()));
+            }
+        }
+        progressDone.reset();
+        nodes.reset();
+    }
+
+    /**
+     * Поиск для корня: всё поле свободно, кроме заблокированных клеток и префикса без
+     * его последней клетки (в неё поиск «шагает» первым узлом), а стек пути уже
+     * содержит клетки префикса.
+     */
+    private Search rootSearch() {
+        long[] free = allCells();
+        int root = rootCell();
+        for (int cell = 0; cell < cells; cell++) {
+            if (cell != root && isBlocked(cell)) {
+                free[cell >>> 6] &= ~(1L << cell);
+            }
+        }
+        int[] path = new int[cells];
+        int depth = 0;
+        if (prefix != null) {
+            for (int i = 0; i < prefix.length - 1; i++) {
+                int cell = prefix[i];
+                free[cell >>> 6] &= ~(1L << cell);
+                path[depth++] = cell;
+            }
+        }
+        return new Search(free, path, depth);
+    }
+
+    private int rootCell() {
+        return (prefix == null) ? start : prefix[prefix.length - 1];
+    }
+
+    private int rootCost() {
+        int sum = 0;
+        if (prefix != null) {
+            for (int cell : prefix) {
+                sum += cost[cell];
+            }
+        }
+        return sum;
+    }
+
+    private boolean isBlocked(int cell) {
+        return blocked != null && blocked[cell] && cell != end;
+    }
+
+    /**
+     * Заходит ли продолжение префикса в заблокированную клетку (такой путь в игре не сыграть).
+     */
+    private boolean entersBlocked(int[] path) {
+        for (int i = rootSteps; i < path.length; i++) {
+            if (isBlocked(path[i])) return true;
+        }
+        return false;
+    }
+
+    private int distance(int a, int b) {
+        return Math.abs(a / size - b / size) + Math.abs(a % size - b % size);
+    }
+
+    /**
+     * Итог поиска. Если что-то было брошено из-за бюджета, то оптимум не меньше
+     * минимума из найденного счёта и оценок брошенных веток; если все эти оценки
+     * не лучше найденного — он всё равно доказан.
+     */
+    private PathResult toResult(long startNanos) {
+        // В параллельном поиске приход в одном потоке может отсечь приход в другом,
+        // чей перебор потом оборвёт бюджет, — такой таблице следующий поиск не верит
+        if (!keepTable || splitDepth > 0) {
+            table = null;
+        }
+        hasDeadline = false;
+        Incumbent incumbent = best.get();
+        double open = frontier.get();
+        return new PathResult(incumbent.ratio, incumbent.path, Math.min(incumbent.ratio, open),
+                open >= incumbent.ratio, nodes.sum(), System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Проверка бюджета (вызывается раз в CANCEL_CHECK_MASK + 1 узлов).
+     *
+     * @return true, если бюджет исчерпан этим или другим потоком
+     */
+    private boolean budgetExhausted() {
+        if (exhausted) return true;
+        if ((nodeBudget > 0 && nodes.sum() >= nodeBudget)
+                || (hasDeadline && System.nanoTime() - deadlineNanos >= 0)) {
+            exhausted = true;
+        }
+        return exhausted;
+    }
+
+    /**
+     * Предлагает найденный путь как новый лучший. Без блокировок: CAS на ссылке,
+     * пока наш счёт строго лучше текущего. Копия пути создаётся только при улучшении.
+     */
+    private void offer(double score, int[] path, int length) {
+        Incumbent current = best.get();
+        if (score >= current.ratio) return;
+
+        Incumbent candidate = new Incumbent(score, Arrays.copyOf(path, length));
+        while (score < current.ratio) {
+            if (best.compareAndSet(current, candidate)) return;
+            current = best.get();
+        }
+    }
+
+    /**
+     * Учитывает завершённую часть дерева перебора. Доли узлов глубже PROGRESS_DEPTH
+     * уже входят в долю их предка на этой глубине.
+     */
+    private void completeShare(int steps, double share) {
+        if (steps - rootSteps + 1 > PROGRESS_DEPTH) return;
+        progressDone.add(share);
+        if (progressListener != null) {
+            progressListener.accept(progressDone.sum());
+        }
+    }
+
+    /**
+     * Лучший найденный путь и его счёт (неизменяемая пара для атомарной замены).
+     */
+    private static final class Incumbent {
+        final double ratio;
+        final int[] path;
+
+        Incumbent(double ratio, int[] path) {
+            this.ratio = ratio;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Задача fork/join: перебор поддерева с собственными копиями маски свободных и пути.
+     */
+    private final class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int cell, costSoFar, stepsSoFar;
+        private final long[] free;
+        private final int[] path;
+        private final int depth;
+        private final double share;
+
+        SubtreeTask(int cell, int costSoFar, int stepsSoFar,
+                    long[] free, int[] path, int depth, double share) {
+            this.cell = cell;
+            this.costSoFar = costSoFar;
+            this.stepsSoFar = stepsSoFar;
+            this.free = free;
+            this.path = path;
+            this.depth = depth;
+            this.share = share;
+        }
+
+        @Override
+        protected void compute() {
+            new Search(free, path, depth).run(cell, costSoFar, stepsSoFar, share);
+        }
+    }
+
+    /**
+     * Состояние одного потока перебора: маска свободных клеток, стек пути,
+     * гистограмма очков свободных клеток и счётчик узлов.
+     */
+    private final class Search {
+        // Свободные клетки: связная область с финишем, не занятая путём
+        private final long[] free;
+        private final int[] path;
+        private int depth;
+        // valueCount[v] — сколько свободных клеток (кроме финиша) дают v очков
+        private final int[] valueCount = new int[MAX_CELL_VALUE + 1];
+        // Zobrist-хеш маски свободных и число свободных клеток
+        private long freeHash;
+        private int freeCount;
+        // Для отката отсечённых областей — состояние до отсечения на каждой глубине.
+        // Растут по мере надобности: на большом поле (cells + 1) * words слов — это
+        // мегабайты на каждую задачу, а глубина пути обычно намного меньше числа клеток
+        private long[] savedFree;
+        private int[] savedCounts;
+        private long[] savedHash;
+        private int[] savedFreeCount;
+        // Рабочая маска заливки
+        private final long[] reached;
+        // Явный стек перебора: состояние кадра на каждой глубине пути
+        private final int[] frameCost;
+        private final int[] frameSteps;
+        private final int[] frameDir;
+        private final boolean[] frameCut;
+        private final double[] frameShare;
+        private long localNodes;
+
+        Search(long[] free, int[] path, int depth) {
+            this.free = free;
+            this.path = path;
+            this.depth = depth;
+            int savedDepths = Math.min(cells + 1, INITIAL_SAVED_DEPTHS);
+            this.savedFree = new long[savedDepths * words];
+            this.savedCounts = new int[savedDepths * valueCount.length];
+            this.savedHash = new long[savedDepths];
+            this.savedFreeCount = new int[savedDepths];
+            this.reached = new long[words];
+            this.frameCost = new int[cells];
+            this.frameSteps = new int[cells];
+            this.frameDir = new int[cells];
+            this.frameCut = new boolean[cells];
+            this.frameShare = new double[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                if (!isFree(cell)) continue;
+                freeHash ^= freeKeys[cell];
+                freeCount++;
+                if (cell != end) {
+                    valueCount[cost[cell]]++;
+                }
+            }
+        }
+
+        /**
+         * Перебор поддерева целиком (корень задачи) с учётом всех посещённых узлов.
+         */
+        void run(int cell, int costSoFar, int stepsSoFar, double share) {
+            try {
+                // Задача, начатая уже после исчерпания бюджета, — сразу на границу
+                if (exhausted) {
+                    frontier.accumulate(openBound(cell, costSoFar, stepsSoFar));
+                    return;
+                }
+                iterate(cell, costSoFar, stepsSoFar, share);
+            } finally {
+                nodes.add(localNodes);
+                localNodes = 0;
+            }
+        }
+
+        /**
+         * Перебор в глубину без рекурсии: кадр на глубине d — это клетка path[d]
+         * и её состояние в массивах frame*. Порядок обхода и отсечения те же,
+         * что у рекурсивного варианта: вверх, вниз, влево, вправо.
+         */
+        private void iterate(int rootCell, int rootCost, int rootSteps, double rootShare) {
+            int rootDepth = depth;
+            if (!enter(rootCell, rootCost, rootSteps, rootShare)) {
+                abandon(rootDepth, rootCell, rootCost, rootSteps);
+                return;
+            }
+            while (depth > rootDepth) {
+                int top = depth - 1;
+                int dir = frameDir[top];
+                if (dir == DIRECTIONS) {
+                    leave(top);
+                    continue;
+                }
+                frameDir[top] = dir + 1;
+
+                int next = neighbors[path[top] * DIRECTIONS + dir];
+                int nextSteps = frameSteps[top] + 1;
+                double nextShare = frameShare[top] / DIRECTIONS;
+                if (next < 0 || !isFree(next)) {
+                    completeShare(nextSteps, nextShare);
+                    continue;
+                }
+                if (!enter(next, frameCost[top] + cost[next], nextSteps, nextShare)) {
+                    abandon(rootDepth, next, frameCost[top] + cost[next], nextSteps);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Бюджет исчерпан: сворачиваем стек до корня задачи и отдаём в frontier
+         * оценки снизу всех ещё не перебранных веток — клетки, в которую не успели
+         * шагнуть, и непройденных направлений каждого кадра. Каждый кадр оцениваем
+         * в том состоянии, в котором он перебирал детей (более глубокие уже откачены).
+         */
+        private void abandon(int rootDepth, int pendingCell, int pendingCost, int pendingSteps) {
+            double bound = openBound(pendingCell, pendingCost, pendingSteps);
+            while (depth > rootDepth) {
+                int top = depth - 1;
+                for (int dir = frameDir[top]; dir < DIRECTIONS; dir++) {
+                    int next = neighbors[path[top] * DIRECTIONS + dir];
+                    if (next < 0 || !isFree(next)) continue;
+                    bound = Math.min(bound, openBound(next, frameCost[top] + cost[next], frameSteps[top] + 1));
+                }
+                // Кадр записан в таблицу при входе (шаг 4 в enter), но перебран не до конца
+                if (table != null && frameCost[top] > 0 && freeCount >= MIN_TABLE_FREE) {
+                    table.forget(freeHash ^ headKeys[path[top]], frameCost[top], frameSteps[top]);
+                }
+                undo(top);
+            }
+            frontier.accumulate(bound);
+        }
+
+        /**
+         * Оценка снизу для ещё не перебранной ветки: шаг в свободную клетку cell.
+         */
+        private double openBound(int cell, int costSoFar, int stepsSoFar) {
+            if (cell == end) {
+                return (costSoFar == 0) ? Double.MAX_VALUE : (double) costSoFar / stepsSoFar;
+            }
+            valueCount[cost[cell]]--;
+            double bound = lowerBound(cell, costSoFar, stepsSoFar);
+            valueCount[cost[cell]]++;
+            return bound;
+        }
+
+        /**
+         * Шаг в свободную клетку. Если из неё есть смысл перебирать дальше,
+         * на стеке остаётся её кадр; иначе всё сразу откатывается.
+         *
+         * @param cell       свободная клетка, в которую делаем шаг
+         * @param costSoFar  набранная сумма очков (уже с этой клеткой)
+         * @param stepsSoFar количество сделанных шагов (стартовые считаем за 1)
+         * @param share      доля дерева перебора, приходящаяся на этот узел (для прогресса)
+         * @return false, если бюджет исчерпан и шаг не сделан
+         */
+        private boolean enter(int cell, int costSoFar, int stepsSoFar, double share) {
+            // 0. Проверка отмены и бюджета (не на каждом узле); заодно сбрасываем счётчик узлов
+            if ((++localNodes & CANCEL_CHECK_MASK) == 0) {
+                nodes.add(localNodes);
+                localNodes = 0;
+                if (cancelled) throw new CancellationException();
+                if (budgetExhausted()) return false;
+            }
+
+            clearFree(cell);
+            int top = depth;
+            path[depth++] = cell;
+
+            // 1. Если дошли до финиша — обновляем лучший результат
+            if (cell == end) {
+                double score = (double) costSoFar / (double) stepsSoFar;
+
+                // Если нашли улучшение — запишем
+                if (score != 0) {
+                    offer(score, path, depth);
+                }
+
+                // Откат
+                setFree(cell);
+                depth--;
+                completeShare(stepsSoFar, share);
+                return true;
+            }
+
+            // Клетка занята — убираем её очки из гистограммы свободных
+            valueCount[cost[cell]]--;
+            frameSteps[top] = stepsSoFar;
+            frameShare[top] = share;
+
+            // 2. Достижимость финиша. Если свободные соседи клетки связаны между собой
+            //    через кольцо вокруг неё, то шаг сюда ничего не разрезал. Иначе заливкой
+            //    от финиша оставляем только его область, а остальное выбрасываем.
+            int groups = freeGroupsAround(cell);
+            boolean cut = groups > 1;
+            frameCut[top] = cut;
+            if (cut) {
+                saveCut();
+            }
+            if (groups == 0 || (cut && !keepEndRegion(cell))) {
+                // Тупик: финиш отсюда уже не достать
+                prune(top);
+                return true;
+            }
+
+            // 3. Оценка снизу: лучший ratio, которого ещё можно достичь из этой клетки.
+            //    Если он всё равно >= лучшего счёта, то нет смысла углубляться дальше.
+            if (lowerBound(cell, costSoFar, stepsSoFar) >= best.get().ratio) {
+                // Прекращаем — в лучшем случае не станем лучше.
+                prune(top);
+                return true;
+            }
+
+            // 4. Сюда уже приходили с не большей суммой и не меньшим числом шагов —
+            //    всё, что можно найти отсюда, уже найдено (или отсечено) тогда.
+            //    Приходы с нулевой суммой не запоминаем: путь со счётом 0 не засчитывается.
+            if (table != null && costSoFar > 0 && freeCount >= MIN_TABLE_FREE
+                    && table.dominatedOrStore(freeHash ^ headKeys[cell], costSoFar, stepsSoFar, freeCount)) {
+                prune(top);
+                return true;
+            }
+
+            // 5. Верх дерева в параллельном режиме: каждое направление — отдельная задача
+            if (stepsSoFar < splitDepth) {
+                double childShare = share / DIRECTIONS;
+                List<SubtreeTask> tasks = new ArrayList<>(DIRECTIONS);
+                for (int i = 0; i < DIRECTIONS; i++) {
+                    int next = neighbors[cell * DIRECTIONS + i];
+                    if (next < 0 || !isFree(next)) {
+                        completeShare(stepsSoFar + 1, childShare);
+                        continue;
+                    }
+                    tasks.add(new SubtreeTask(next, costSoFar + cost[next], stepsSoFar + 1,
+                            free.clone(), path.clone(), depth, childShare));
+                }
+                RecursiveAction.invokeAll(tasks);
+                leave(top);
+                return true;
+            }
+
+            // 6. Иначе — кадр на стек, направления переберёт iterate()
+            frameCost[top] = costSoFar;
+            frameDir[top] = 0;
+            return true;
+        }
+
+        /**
+         * Откат кадра, поддерево которого полностью перебрано.
+         */
+        private void leave(int top) {
+            undo(top);
+            int steps = frameSteps[top];
+            if (steps - rootSteps + 1 == PROGRESS_DEPTH) {
+                completeShare(steps, frameShare[top]);
+            }
+        }
+
+        /**
+         * Откат кадра, отсечённого до перебора направлений.
+         */
+        private void prune(int top) {
+            undo(top);
+            completeShare(frameSteps[top], frameShare[top]);
+        }
+
+        private void undo(int top) {
+            if (frameCut[top]) restoreFree();
+            int cell = path[top];
+            valueCount[cost[cell]]++;
+            setFree(cell);
+            depth--;
+        }
+
+        /**
+         * Сколько несвязанных между собой групп свободных соседей у клетки, если
+         * смотреть только на кольцо из 8 клеток вокруг неё (см. RING_GROUPS).
+         */
+        private int freeGroupsAround(int cell) {
+            int base = cell * RING;
+            int mask = 0;
+            for (int k = 0; k < RING; k++) {
+                int c = ring[base + k];
+                if (c >= 0 && isFree(c)) mask |= 1 << k;
+            }
+            return RING_GROUPS[mask];
+        }
+
+        /**
+         * Заливка от финиша по свободным клеткам. Если область финиша касается клетки,
+         * оставляем свободной только её (очки остального убираем из гистограммы).
+         * Состояние до отсечения уже сохранено в saveCut().
+         * <p>
+         * Заливка побитовая: за проход маска достигнутых расширяется сразу на всех
+         * четырёх направлениях сдвигами слов, пока не перестанет меняться.
+         *
+         * @return false, если от клетки до финиша больше не дойти (маска не изменена)
+         */
+        private boolean keepEndRegion(int cell) {
+            Arrays.fill(reached, 0L);
+            reached[end >>> 6] |= 1L << end;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int w = 0; w < words; w++) {
+                    long spread = reached[w]
+                            | (shiftedLeft(reached, notLastColumn, 1, w))
+                            | (shiftedRight(reached, notFirstColumn, 1, w))
+                            | (shiftedLeft(reached, null, size, w))
+                            | (shiftedRight(reached, null, size, w));
+                    spread &= free[w];
+                    if (spread != reached[w]) {
+                        reached[w] = spread;
+                        changed = true;
+                    }
+                }
+            }
+
+            boolean touches = false;
+            int base = cell * DIRECTIONS;
+            for (int i = 0; i < DIRECTIONS; i++) {
+                int n = neighbors[base + i];
+                if (n >= 0 && (reached[n >>> 6] & (1L << n)) != 0) {
+                    touches = true;
+                    break;
+                }
+            }
+            if (!touches) return false;
+
+            for (int w = 0; w < words; w++) {
+                long dropped = free[w] & ~reached[w];
+                while (dropped != 0) {
+                    int c = (w << 6) + Long.numberOfTrailingZeros(dropped);
+                    valueCount[cost[c]]--;
+                    freeHash ^= freeKeys[c];
+                    freeCount--;
+                    dropped &= dropped - 1;
+                }
+                free[w] = reached[w];
+            }
+            return true;
+        }
+
+        /**
+         * Слово w маски (src & filter) << shift, где маска — многословное число.
+         */
+        private long shiftedLeft(long[] src, long[] filter, int shift, int w) {
+            int from = w - (shift >>> 6);
+            int bits = shift & 63;
+            long result = 0;
+            if (from >= 0) {
+                result = masked(src, filter, from) << bits;
+                if (bits != 0 && from > 0) {
+                    result |= masked(src, filter, from - 1) >>> (64 - bits);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Слово w маски (src & filter) >>> shift, где маска — многословное число.
+         */
+        private long shiftedRight(long[] src, long[] filter, int shift, int w) {
+            int from = w + (shift >>> 6);
+            int bits = shift & 63;
+            long result = 0;
+            if (from < words) {
+                result = masked(src, filter, from) >>> bits;
+                if (bits != 0 && from + 1 < words) {
+                    result |= masked(src, filter, from + 1) << (64 - bits);
+                }
+            }
+            return result;
+        }
+
+        private long masked(long[] src, long[] filter, int w) {
+            return (filter == null) ? src[w] : src[w] & filter[w];
+        }
+
+        /**
+         * Сохраняет маску, гистограмму, хеш и число свободных до отсечения на этой глубине.
+         */
+        private void saveCut() {
+            if (depth >= savedHash.length) {
+                int savedDepths = Math.min(cells + 1, Math.max(depth + 1, savedHash.length * 2));
+                savedFree = Arrays.copyOf(savedFree, savedDepths * words);
+                savedCounts = Arrays.copyOf(savedCounts, savedDepths * valueCount.length);
+                savedHash = Arrays.copyOf(savedHash, savedDepths);
+                savedFreeCount = Arrays.copyOf(savedFreeCount, savedDepths);
+            }
+            System.arraycopy(free, 0, savedFree, depth * words, words);
+            System.arraycopy(valueCount, 0, savedCounts, depth * valueCount.length, valueCount.length);
+            savedHash[depth] = freeHash;
+            savedFreeCount[depth] = freeCount;
+        }
+
+        /**
+         * Возвращает отсечённые в этом узле области (всё, что сохранил saveCut()).
+         */
+        private void restoreFree() {
+            System.arraycopy(savedFree, depth * words, free, 0, words);
+            System.arraycopy(savedCounts, depth * valueCount.length, valueCount, 0, valueCount.length);
+            freeHash = savedHash[depth];
+            freeCount = savedFreeCount[depth];
+        }
+
+        /**
+         * Допустимая (не завышающая) оценка снизу для любого продолжения пути из клетки.
+         * <p>
+         * Продолжение — это k клеток: k - 1 промежуточных и финиш (0 очков), причём
+         * k не меньше манхэттенского расстояния до финиша. Сумма очков k - 1 клеток
+         * не меньше суммы k - 1 самых дешёвых из гистограммы, поэтому берём их по
+         * возрастанию: сначала обязательные, потом — пока очередная клетка тянет
+         * отношение вниз (v < текущего ratio). Минимум по k достигается именно так:
+         * как только v >= ratio, все следующие (не дешевле) отношение только растят.
+         *
+         * @return нижняя граница счёта или Double.MAX_VALUE, если до финиша не хватит клеток
+         */
+        private double lowerBound(int cell, int costSoFar, int stepsSoFar) {
+            int required = distanceToEnd[cell] - 1;
+            long sum = costSoFar;
+            long steps = stepsSoFar + 1; // последний шаг — на финиш
+            for (int v = 0; v <= MAX_CELL_VALUE; v++) {
+                int count = valueCount[v];
+                if (required > 0) {
+                    int take = Math.min(required, count);
+                    sum += (long) take * v;
+                    steps += take;
+                    required -= take;
+                    count -= take;
+                    if (required > 0) continue;
+                }
+                // Клетка со значением v < sum / steps улучшает отношение, и после
+                // добавления это условие для той же v сохраняется — берём все такие
+                if (v * steps >= sum) break;
+                sum += (long) count * v;
+                steps += count;
+            }
+            if (required > 0) return Double.MAX_VALUE;
+            return (double) sum / steps;
+        }
+
+        private boolean isFree(int cell) {
+            return (free[cell >>> 6] & (1L << cell)) != 0;
+        }
+
+        private void setFree(int cell) {
+            free[cell >>> 6] |= 1L << cell;
+            freeHash ^= freeKeys[cell];
+            freeCount++;
+        }
+
+        private void clearFree(int cell) {
+            free[cell >>> 6] &= ~(1L << cell);
+            freeHash ^= freeKeys[cell];
+            freeCount--;
+        }
+    }
+}
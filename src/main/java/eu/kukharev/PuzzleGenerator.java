@@ -0,0 +1,339 @@
+package eu.kukharev;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Генератор полей заданной сложности.
+ * <p>
+ * Сложность поля — насколько лучший путь лучше «жадного»: жадный игрок идёт
+ * на финиш, как только он рядом, а иначе — в самую дешёвую соседнюю клетку,
+ * из которой финиш ещё достижим. gap = жадный счёт / лучший счёт - 1: на лёгком
+ * поле жадный путь почти оптимален, на трудном лучший путь приходится искать.
+ * Число узлов, которое понадобилось решателю, тоже сохраняется в {@link Puzzle}.
+ * <p>
+ * Кандидаты — поля {@link BoardGenerator} с зерном, выведенным из общего зерна
+ * и номера кандидата. Они решаются и оцениваются параллельно, пачками по
+ * CANDIDATES_PER_THREAD на поток, а принимаются по порядку номеров, поэтому
+ * одно и то же зерно даёт одни и те же поля при любом числе потоков.
+ * Поле, для которого решатель не успел доказать оптимум, не оценивается и
+ * пропускается; так же пропускается поле, на котором жадный игрок заходит в тупик
+ * (сравнивать с лучшим путём нечего). Полный перебор нужен на каждого кандидата, поэтому размер
+ * поля не больше MAX_SIZE.
+ * <p>
+ * На весь подбор можно дать общее время: кандидаты, которые не успевают, получают
+ * урезанный бюджет или не решаются вовсе, и возвращается то, что нашлось к сроку
+ * (тогда результат зависит от скорости машины). При выходе — по сроку, по отмене
+ * или с ошибкой — решатели ещё идущих кандидатов останавливаются.
+ */
+public class PuzzleGenerator {
+    // Для 10x10 точный перебор часто не укладывается в бюджет кандидата
+    public static final int MAX_SIZE = 9;
+    private static final int CANDIDATES_PER_THREAD = 4;
+    // Бюджет решателя на одного кандидата: дольше — не оцениваем, берём следующего
+    private static final long CANDIDATE_BUDGET_MILLIS = 2_000;
+
+    /**
+     * Уровни сложности: допустимый диапазон gap [minGap, maxGap).
+     */
+    public enum Difficulty {
+        ANY(0, Double.MAX_VALUE),
+        EASY(0, 0.05),
+        MEDIUM(0.05, 0.25),
+        HARD(0.25, Double.MAX_VALUE);
+
+        public final double minGap;
+        public final double maxGap;
+
+        Difficulty(double minGap, double maxGap) {
+            this.minGap = minGap;
+            this.maxGap = maxGap;
+        }
+
+        public boolean accepts(double gap) {
+            return gap >= minGap && gap < maxGap;
+        }
+    }
+
+    /**
+     * Поле с оценкой: лучший путь, жадный счёт и сложность.
+     */
+    public static class Puzzle {
+        public final Board board;
+        public final PathResult best;
+        public final double greedyRatio;
+        public final double gap;
+
+        Puzzle(Board board, PathResult best, double greedyRatio) {
+            this.board = board;
+            this.best = best;
+            this.greedyRatio = greedyRatio;
+            this.gap = greedyRatio / best.bestRatio - 1;
+        }
+    }
+
+    private final long seed;
+    private final int threads;
+
+    /**
+     * @param seed    общее зерно (кандидат i строится из зерна, выведенного из seed и i)
+     * @param threads сколько кандидатов решать одновременно
+     */
+    public PuzzleGenerator(long seed, int threads) {
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * Первые count полей размера size нужной сложности среди не больше чем
+     * maxCandidates кандидатов (если подходящих меньше — вернёт сколько нашлось).
+     *
+     * @param start           индекс клетки старта (x * size + y) или -1, чтобы выбирать
+     *                        случайно; то же для end
+     * @param timeLimitMillis время на весь подбор (0 — без ограничения)
+     * @throws CancellationException если поток прервали (например, Task.cancel)
+     */
+    public List<Puzzle> generate(int size, int start, int end, Difficulty difficulty,
+                                 int count, long maxCandidates, long timeLimitMillis) {
+        if (size < 3 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be 3.." + MAX_SIZE + ": " + size);
+        }
+        long deadline = System.nanoTime() + timeLimitMillis * 1_000_000L;
+        List<Puzzle> accepted = new ArrayList<>();
+        Set<PathSolver> running = ConcurrentHashMap.newKeySet();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ArrayDeque<Future<Puzzle>> batch = new ArrayDeque<>();
+            long candidate = 0;
+            while (accepted.size() < count && candidate < maxCandidates
+                    && (timeLimitMillis <= 0 || System.nanoTime() - deadline < 0)) {
+                long batchEnd = Math.min(maxCandidates, candidate + (long) threads * CANDIDATES_PER_THREAD);
+                for (; candidate < batchEnd; candidate++) {
+                    Board board = candidate(size, start, end, candidate);
+                    // Решатель заводим сразу, чтобы при выходе остановить и ещё не начатые
+                    PathSolver solver = board.newSolver();
+                    running.add(solver);
+                    batch.add(workers.submit(() -> {
+                        try {
+                            long budget = CANDIDATE_BUDGET_MILLIS;
+                            if (timeLimitMillis > 0) {
+                                budget = Math.min(budget, (deadline - System.nanoTime()) / 1_000_000L);
+                                if (budget <= 0) return null;
+                            }
+                            return rate(board, solver, budget);
+                        } finally {
+                            running.remove(solver);
+                        }
+                    }));
+                }
+                while (!batch.isEmpty()) {
+                    Puzzle puzzle = batch.poll().get();
+                    if (puzzle != null && accepted.size() < count && difficulty.accepts(puzzle.gap)) {
+                        accepted.add(puzzle);
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (PathSolver solver : running) {
+                solver.cancel();
+            }
+            workers.shutdownNow();
+        }
+        return accepted;
+    }
+
+    /**
+     * Кандидат с номером index (одинаковый при любом числе потоков).
+     */
+    private Board candidate(int size, int start, int end, long index) {
+        BoardGenerator generator = new BoardGenerator(mix(seed + index));
+        if (start < 0 || end < 0) {
+            return generator.next(size);
+        }
+        int[] cells = new int[size * size];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = (cell == start) ? -1 : (cell == end) ? -2 : generator.nextValue();
+        }
+        return new Board(size, cells, start, end);
+    }
+
+    /**
+     * Решает поле решателем solver с бюджетом budgetMillis и считает его сложность
+     * (null, если жадный путь не дошёл до финиша, оптимум не доказан или пути нет).
+     */
+    static Puzzle rate(Board board, PathSolver solver, long budgetMillis) {
+        int[] greedy = greedyPath(board);
+        if (greedy == null) {
+            return null;
+        }
+        solver.setTimeBudget(budgetMillis);
+        // Жадный путь — сразу неплохая граница, с ней перебор отсекает больше
+        solver.setKnownPath(greedy);
+        PathResult best = solver.solve();
+        if (!best.optimal || !best.found()) {
+            return null;
+        }
+        return new Puzzle(board, best, ratio(board, greedy));
+    }
+
+    /**
+     * Счёт пути как у решателя: сумма очков / число клеток пути со стартом.
+     */
+    static double ratio(Board board, int[] path) {
+        long sum = 0;
+        for (int cell : path) {
+            sum += Math.max(board.cells[cell], 0);
+        }
+        return (sum == 0) ? Double.MAX_VALUE : (double) sum / path.length;
+    }
+
+    /**
+     * Путь жадного игрока от старта до финиша (null, если он не дошёл).
+     */
+    static int[] greedyPath(Board board) {
+        int size = board.size;
+        boolean[] used = new boolean[size * size];
+        int[] path = new int[size * size];
+        int length = 0;
+        int cell = board.start;
+        used[cell] = true;
+        path[length++] = cell;
+        while (cell != board.end) {
+            int next = -1;
+            for (int neighbor : neighbors(cell, size)) {
+                if (neighbor < 0 || used[neighbor]) continue;
+                if (neighbor == board.end) {
+                    next = neighbor;
+                    break;
+                }
+                if (next >= 0 && !isCheaper(board, neighbor, next)) continue;
+                used[neighbor] = true;
+                boolean reachable = reachable(board, used, neighbor);
+                used[neighbor] = false;
+                if (reachable) next = neighbor;
+            }
+            if (next < 0) return null;
+            used[next] = true;
+            path[length++] = next;
+            cell = next;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * a лучше b для жадного игрока: дешевле, а при равной цене — ближе к финишу.
+     */
+    private static boolean isCheaper(Board board, int a, int b) {
+        if (board.cells[a] != board.cells[b]) return board.cells[a] < board.cells[b];
+        return distance(board, a) < distance(board, b);
+    }
+
+    private static int distance(Board board, int cell) {
+        int size = board.size;
+        return Math.abs(cell / size - board.end / size) + Math.abs(cell % size - board.end % size);
+    }
+
+    /**
+     * Достижим ли финиш из from по незанятым клеткам.
+     */
+    private static boolean reachable(Board board, boolean[] used, int from) {
+        int size = board.size;
+        boolean[] seen = new boolean[size * size];
+        int[] queue = new int[size * size];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        seen[from] = true;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int neighbor : neighbors(cell, size)) {
+                if (neighbor < 0 || seen[neighbor]) continue;
+                if (neighbor == board.end) return true;
+                if (used[neighbor]) continue;
+                seen[neighbor] = true;
+                queue[tail++] = neighbor;
+            }
+        }
+        return false;
+    }
+
+    private static int[] neighbors(int cell, int size) {
+        int x = cell / size;
+        int y = cell % size;
+        return new int[]{
+                (x > 0) ? cell - size : -1,
+                (x < size - 1) ? cell + size : -1,
+                (y > 0) ? cell - 1 : -1,
+                (y < size - 1) ? cell + 1 : -1
+        };
+    }
+
+    /**
+     * Перемешивание зерна (SplitMix64), чтобы у соседних номеров кандидатов были несвязанные поля.
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * &lt;file&gt; &lt;size&gt; &lt;count&gt; &lt;difficulty&gt; &lt;seed&gt; [threads] — пишет подходящие
+     * поля в набор {@link BoardCorpus} (со счётом лучшего пути).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: PuzzleGenerator <file> <size> <count> <ANY|EASY|MEDIUM|HARD> <seed> [threads]");
+            System.exit(2);
+        }
+        int size = Integer.parseInt(args[1]);
+        int count = Integer.parseInt(args[2]);
+        Difficulty difficulty = Difficulty.valueOf(args[3].toUpperCase(Locale.ROOT));
+        long seed = Long.parseLong(args[4]);
+        int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        long startNanos = System.nanoTime();
+        List<Puzzle> puzzles = new PuzzleGenerator(seed, threads)
+                .generate(size, -1, -1, difficulty, count, (long) count * 1000, 0);
+        try (BoardCorpus.Writer writer = new BoardCorpus.Writer(Paths.get(args[0]), size, seed)) {
+            for (Puzzle puzzle : puzzles) {
+                writer.add(puzzle.board, puzzle.best.bestRatio);
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double gaps = 0;
+        long nodes = 0;
+        for (Puzzle puzzle : puzzles) {
+            gaps += puzzle.gap;
+            nodes += puzzle.best.nodesExplored;
+        }
+        System.out.printf(Locale.ROOT, "%d of %d boards, %.2f s, mean gap %.3f, mean nodes %d%n",
+                puzzles.size(), count, seconds, puzzles.isEmpty() ? 0 : gaps / puzzles.size(),
+                puzzles.isEmpty() ? 0 : nodes / puzzles.size());
+    }
+}
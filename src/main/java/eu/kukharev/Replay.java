@@ -0,0 +1,130 @@
+package eu.kukharev;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Запись партии для повтора: состояние на старте и ходы (направления из
+ * {@link MoveJournal}, по байту на ход).
+ * <p>
+ * Чтобы перемотка к любому ходу не проигрывала партию с начала, при создании
+ * вся партия проигрывается один раз и каждые CHECKPOINT_INTERVAL ходов
+ * запоминается копия состояния. Состояние после хода k — копия ближайшей
+ * контрольной точки не позже k плюс не больше CHECKPOINT_INTERVAL - 1 ходов.
+ * <p>
+ * Формат файла (little-endian):
+ * <pre>
+ * int magic, short version, short 0, int moveCount, int snapshotBytes,
+ * снимок старта в формате {@link SaveFile}, ходы по байту, int CRC32 всего, что перед ним
+ * </pre>
+ */
+public class Replay {
+    static final int CHECKPOINT_INTERVAL = 32;
+    private static final int MAGIC = 0x524E4456; // "VDNR"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    public final GameState start;
+    private final byte[] moves;
+    // checkpoints[i] — состояние после i * CHECKPOINT_INTERVAL ходов
+    private final GameState[] checkpoints;
+
+    /**
+     * @param start состояние на старте (копируется)
+     * @param moves направления ходов
+     * @throws IllegalArgumentException если какой-то ход по правилам невозможен
+     */
+    public Replay(GameState start, byte[] moves) {
+        this.start = start.copy();
+        this.moves = moves.clone();
+        this.checkpoints = new GameState[moves.length / CHECKPOINT_INTERVAL + 1];
+
+        GameState state = start.copy();
+        checkpoints[0] = start.copy();
+        for (int move = 0; move < moves.length; move++) {
+            if (!MoveJournal.apply(state, moves[move])) {
+                throw new IllegalArgumentException("Move " + (move + 1) + " is not possible");
+            }
+            if ((move + 1) % CHECKPOINT_INTERVAL == 0) {
+                checkpoints[(move + 1) / CHECKPOINT_INTERVAL] = state.copy();
+            }
+        }
+    }
+
+    /**
+     * Число ходов в партии.
+     */
+    public int length() {
+        return moves.length;
+    }
+
+    /**
+     * Новое (независимое) состояние после первых count ходов.
+     */
+    public GameState stateAt(int count) {
+        if (count < 0 || count > moves.length) {
+            throw new IndexOutOfBoundsException("Move " + count + " of " + moves.length);
+        }
+        int checkpoint = count / CHECKPOINT_INTERVAL;
+        GameState state = checkpoints[checkpoint].copy();
+        for (int move = checkpoint * CHECKPOINT_INTERVAL; move < count; move++) {
+            MoveJournal.apply(state, moves[move]);
+        }
+        return state;
+    }
+
+    /**
+     * Применяет к state ход с номером move (state должен быть состоянием после move ходов).
+     */
+    public void step(GameState state, int move) {
+        MoveJournal.apply(state, moves[move]);
+    }
+
+    /**
+     * Запись в двоичном формате, готовая к записи в файл.
+     */
+    public ByteBuffer encode() {
+        ByteBuffer snapshot = SaveFile.encode(start);
+        int length = HEADER_BYTES + snapshot.remaining() + moves.length + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(moves.length).putInt(snapshot.remaining());
+        buffer.put(snapshot).put(moves);
+        buffer.putInt(SaveFile.checksum(buffer, buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Разбирает запись из buffer (от position до limit) и строит контрольные точки.
+     */
+    public static Replay decode(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.remaining();
+        if (length < HEADER_BYTES + 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported replay version " + buffer.getShort(4));
+        }
+        int moveCount = buffer.getInt(8);
+        int snapshotBytes = buffer.getInt(12);
+        if (moveCount < 0 || snapshotBytes < 0
+                || (long) HEADER_BYTES + snapshotBytes + moveCount + 4 != length) {
+            throw new IOException("Corrupted replay header");
+        }
+        if (buffer.getInt(length - 4) != SaveFile.checksum(buffer, length - 4)) {
+            throw new IOException("Replay checksum mismatch");
+        }
+
+        GameState start = SaveFile.decode(buffer.slice(HEADER_BYTES, snapshotBytes));
+        byte[] moves = new byte[moveCount];
+        buffer.get(HEADER_BYTES + snapshotBytes, moves);
+        try {
+            return new Replay(start, moves);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted replay: " + e.getMessage(), e);
+        }
+    }
+}
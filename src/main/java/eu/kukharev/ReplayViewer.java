@@ -0,0 +1,171 @@
+package eu.kukharev;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+/**
+ * Экран повтора партии: поле, ползунок по ходам, «Play/Pause» и «Back».
+ * <p>
+ * Холст рисует собственную копию поля. Шаг вперёд применяет к текущему
+ * состоянию один ход и перерисовывает две клетки (откуда и куда ушёл игрок).
+ * Перемотка берёт состояние у {@link Replay} (контрольная точка плюс несколько
+ * ходов) и перерисовывает только клетки, которые отличаются от показанных.
+ */
+public class ReplayViewer {
+    private static final int WINDOW_SIZE = 1000;
+    private static final Duration STEP_DELAY = Duration.millis(250);
+
+    private final WindowManager windowManager;
+    private final Replay replay;
+    private final int fieldSize;
+    // То, что нарисовано на холсте, и состояние после position ходов
+    private final int[][] shownField;
+    private GameState current;
+    private int position;
+
+    private BoardCanvas boardView;
+    private Slider slider;
+    private Label moveLabel;
+    private Button playButton;
+    private Timeline playback;
+
+    public ReplayViewer(WindowManager windowManager, Replay replay) {
+        this.windowManager = windowManager;
+        this.replay = replay;
+        this.fieldSize = replay.start.fieldSize;
+        this.current = replay.stateAt(0);
+        this.shownField = new int[fieldSize][];
+        for (int x = 0; x < fieldSize; x++) {
+            shownField[x] = current.field[x].clone();
+        }
+    }
+
+    /**
+     * Создаёт сцену повтора (с позицией в начале партии).
+     */
+    public Scene createScene() {
+        ImageView backgroundView = new ImageView(ImageCache.get("/BG1.png"));
+        backgroundView.setFitWidth(WINDOW_SIZE);
+        backgroundView.setFitHeight(WINDOW_SIZE);
+
+        int tileSize = BoardCanvas.tileSizeFor(fieldSize, WINDOW_SIZE);
+        boardView = new BoardCanvas(ImageCache.get("/tiles.png"), shownField, tileSize);
+        boardView.redrawAll();
+
+        slider = new Slider(0, replay.length(), 0);
+        slider.setBlockIncrement(1);
+        slider.setMajorTickUnit(1);
+        slider.setMinorTickCount(0);
+        slider.setSnapToTicks(true);
+        slider.setPrefWidth(400);
+        slider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            int target = (int) Math.round(newValue.doubleValue());
+            if (target != position) {
+                seek(target);
+            }
+        });
+
+        moveLabel = new Label();
+        moveLabel.setStyle("-fx-text-fill: black; -fx-font-size: 16;");
+        updateMoveLabel();
+
+        playButton = new Button("Play");
+        playButton.setStyle("-fx-font-size: 16;");
+        playButton.setOnAction(event -> togglePlayback());
+
+        Button backButton = new Button("Back");
+        backButton.setStyle("-fx-font-size: 16;");
+        backButton.setOnAction(event -> {
+            stopPlayback();
+            windowManager.showMenu();
+        });
+
+        playback = new Timeline(new KeyFrame(STEP_DELAY, event -> {
+            if (position < replay.length()) {
+                seek(position + 1);
+            } else {
+                stopPlayback();
+            }
+        }));
+        playback.setCycleCount(Timeline.INDEFINITE);
+
+        HBox controls = new HBox(15, playButton, slider, moveLabel, backButton);
+        controls.setAlignment(Pos.CENTER);
+
+        StackPane boardPane = new StackPane(boardView);
+        VBox content = new VBox(30, boardPane, controls);
+        content.setAlignment(Pos.CENTER);
+        content.setPadding(new Insets(100));
+
+        StackPane root = new StackPane(backgroundView, content);
+        return new Scene(root, WINDOW_SIZE, WINDOW_SIZE);
+    }
+
+    /**
+     * Переходит к позиции после target ходов.
+     */
+    private void seek(int target) {
+        if (target == position + 1) {
+            int fromX = current.playerX;
+            int fromY = current.playerY;
+            replay.step(current, position);
+            syncCell(fromX, fromY);
+            syncCell(current.playerX, current.playerY);
+        } else {
+            current = replay.stateAt(target);
+            for (int x = 0; x < fieldSize; x++) {
+                for (int y = 0; y < fieldSize; y++) {
+                    syncCell(x, y);
+                }
+            }
+        }
+        position = target;
+        if ((int) Math.round(slider.getValue()) != target) {
+            slider.setValue(target);
+        }
+        updateMoveLabel();
+    }
+
+    /**
+     * Перерисовывает клетку, если в состоянии она не такая, как на холсте.
+     */
+    private void syncCell(int x, int y) {
+        if (shownField[x][y] != current.field[x][y]) {
+            shownField[x][y] = current.field[x][y];
+            boardView.redrawCell(x, y);
+        }
+    }
+
+    private void updateMoveLabel() {
+        moveLabel.setText("Move " + position + " / " + replay.length());
+    }
+
+    private void togglePlayback() {
+        if (playback.getStatus() == Timeline.Status.RUNNING) {
+            stopPlayback();
+            return;
+        }
+        // Повтор с конца партии начинается сначала
+        if (position == replay.length()) {
+            seek(0);
+        }
+        playButton.setText("Pause");
+        playback.play();
+    }
+
+    private void stopPlayback() {
+        playback.stop();
+        playButton.setText("Play");
+    }
+}
@@ -0,0 +1,253 @@
+package eu.kukharev;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат сохранения партии (little-endian):
+ * <pre>
+ * заголовок: int magic, short version, short 0, int fieldSize,
+ *            int playerX, int playerY, int endX, int endY, int moves, int valueCount
+ * field:     по 4 бита на клетку (значение + 2, то есть 0..11), клетки x * size + y
+ * visited:   по биту на клетку, в том же порядке
+ * значения:  visitedValues по 4 бита (значение + 2)
+ * int CRC32 всего, что перед ним
+ * </pre>
+ * Младшая половина байта — клетка с чётным индексом. Файл читается одним
+ * чтением в буфер, после проверки длины и контрольной суммы клетки распаковываются
+ * сдвигами, без разбора строк. Партия на поле 10x10 занимает около 130 байт
+ * вместо ~500 в старом текстовом формате, на поле 100x100 — 6–11 КБ вместо ~50 КБ.
+ * <p>
+ * Старый текстовый формат (savegame.txt) по-прежнему читается через {@link #readText(Path)}.
+ */
+public final class SaveFile {
+    private static final int MAGIC = 0x534E4456; // "VDNS"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 36;
+    private static final int CHECKSUM_BYTES = 4;
+    // Значения клеток -2..9 хранятся со сдвигом, чтобы уложиться в 4 бита без знака
+    private static final int VALUE_OFFSET = 2;
+    private static final int MAX_VALUE = 9;
+    private static final int MAX_FIELD_SIZE = 4096;
+
+    private SaveFile() {
+    }
+
+    /**
+     * Записывает state в file (перезаписывая его).
+     */
+    public static void write(Path file, GameState state) throws IOException {
+        ByteBuffer buffer = encode(state);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Читает сохранение из file.
+     *
+     * @throws IOException если файл не в этом формате, обрезан или повреждён
+     */
+    public static GameState read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + CHECKSUM_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a save file");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // читаем до конца файла
+            }
+        }
+        buffer.flip();
+        return decode(buffer);
+    }
+
+    /**
+     * Сохранение в двоичном формате (с контрольной суммой в конце), готовое к записи.
+     */
+    static ByteBuffer encode(GameState state) {
+        int n = state.fieldSize;
+        int cells = n * n;
+        List<Integer> values = state.visitedValues;
+        ByteBuffer buffer = ByteBuffer.allocate(fileBytes(cells, values.size())).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(n)
+                .putInt(state.playerX).putInt(state.playerY)
+                .putInt(state.endX).putInt(state.endY)
+                .putInt(state.moves).putInt(values.size());
+
+        int fieldStart = buffer.position();
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                putNibble(buffer, fieldStart, x * n + y, state.field[x][y]);
+            }
+        }
+        int visitedStart = fieldStart + nibbleBytes(cells);
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                if (state.visited[x][y]) {
+                    int cell = x * n + y;
+                    int at = visitedStart + (cell >>> 3);
+                    buffer.put(at, (byte) (buffer.get(at) | (1 << (cell & 7))));
+                }
+            }
+        }
+        int valuesStart = visitedStart + bitBytes(cells);
+        for (int i = 0; i < values.size(); i++) {
+            putNibble(buffer, valuesStart, i, values.get(i));
+        }
+
+        int checksumAt = valuesStart + nibbleBytes(values.size());
+        buffer.putInt(checksumAt, checksum(buffer, checksumAt));
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Разбирает сохранение из buffer (от position до limit).
+     */
+    static GameState decode(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.remaining();
+        if (length < HEADER_BYTES + CHECKSUM_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a save file");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported save version " + version);
+        }
+        int n = buffer.getInt(8);
+        int valueCount = buffer.getInt(32);
+        if (n < 1 || n > MAX_FIELD_SIZE || valueCount < 0 || valueCount > n * n
+                || length != fileBytes(n * n, valueCount)) {
+            throw new IOException("Corrupted save header");
+        }
+        int checksumAt = length - CHECKSUM_BYTES;
+        if (buffer.getInt(checksumAt) != checksum(buffer, checksumAt)) {
+            throw new IOException("Save file checksum mismatch");
+        }
+
+        GameState state = new GameState();
+        state.fieldSize = n;
+        state.playerX = buffer.getInt(12);
+        state.playerY = buffer.getInt(16);
+        state.endX = buffer.getInt(20);
+        state.endY = buffer.getInt(24);
+        state.moves = buffer.getInt(28);
+
+        int cells = n * n;
+        int fieldStart = HEADER_BYTES;
+        state.field = new int[n][n];
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                state.field[x][y] = getNibble(buffer, fieldStart, x * n + y);
+            }
+        }
+        int visitedStart = fieldStart + nibbleBytes(cells);
+        state.visited = new boolean[n][n];
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int cell = x * n + y;
+                state.visited[x][y] = (buffer.get(visitedStart + (cell >>> 3)) & (1 << (cell & 7))) != 0;
+            }
+        }
+        int valuesStart = visitedStart + bitBytes(cells);
+        for (int i = 0; i < valueCount; i++) {
+            state.visitedValues.add(getNibble(buffer, valuesStart, i));
+        }
+        return state;
+    }
+
+    /**
+     * Читает сохранение старого текстового формата (строки через запятую).
+     */
+    public static GameState readText(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        int line = 0;
+        GameState state = new GameState();
+        state.fieldSize = Integer.parseInt(lines.get(line++));
+
+        String[] playerPos = lines.get(line++).split(";");
+        state.playerX = Integer.parseInt(playerPos[0]);
+        state.playerY = Integer.parseInt(playerPos[1]);
+
+        String[] endPos = lines.get(line++).split(";");
+        state.endX = Integer.parseInt(endPos[0]);
+        state.endY = Integer.parseInt(endPos[1]);
+
+        state.moves = Integer.parseInt(lines.get(line++));
+
+        String visitedValsLine = lines.get(line++);
+        if (!visitedValsLine.isEmpty()) {
+            String[] splitted = visitedValsLine.split(",");
+            for (String s : splitted) {
+                if (!s.isEmpty()) {
+                    state.visitedValues.add(Integer.parseInt(s));
+                }
+            }
+        }
+
+        state.field = new int[state.fieldSize][state.fieldSize];
+        for (int i = 0; i < state.fieldSize; i++) {
+            String[] splitted = lines.get(line++).split(",");
+            for (int j = 0; j < state.fieldSize; j++) {
+                state.field[i][j] = Integer.parseInt(splitted[j]);
+            }
+        }
+
+        state.visited = new boolean[state.fieldSize][state.fieldSize];
+        for (int i = 0; i < state.fieldSize; i++) {
+            String[] splitted = lines.get(line++).split(",");
+            for (int j = 0; j < state.fieldSize; j++) {
+                state.visited[i][j] = splitted[j].equals("1");
+            }
+        }
+        return state;
+    }
+
+    private static void putNibble(ByteBuffer buffer, int start, int index, int value) {
+        if (value < -VALUE_OFFSET || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Cell value out of range: " + value);
+        }
+        int at = start + (index >>> 1);
+        int shift = (index & 1) << 2;
+        buffer.put(at, (byte) (buffer.get(at) | ((value + VALUE_OFFSET) << shift)));
+    }
+
+    private static int getNibble(ByteBuffer buffer, int start, int index) {
+        int shift = (index & 1) << 2;
+        return ((buffer.get(start + (index >>> 1)) >>> shift) & 0xF) - VALUE_OFFSET;
+    }
+
+    /**
+     * CRC32 первых length байт buffer (позиция и предел buffer не меняются).
+     */
+    static int checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(length));
+        return (int) crc.getValue();
+    }
+
+    private static int fileBytes(int cells, int valueCount) {
+        return HEADER_BYTES + nibbleBytes(cells) + bitBytes(cells) + nibbleBytes(valueCount) + CHECKSUM_BYTES;
+    }
+
+    private static int nibbleBytes(int count) {
+        return (count + 1) >>> 1;
+    }
+
+    private static int bitBytes(int count) {
+        return (count + 7) >>> 3;
+    }
+}
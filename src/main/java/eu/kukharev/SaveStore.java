@@ -0,0 +1,463 @@
+package eu.kukharev;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Сохранения по именованным слотам в каталоге saves/: слот — файл
+ * &lt;имя&gt;.dat в формате {@link SaveFile}, плюс slots.index со списком слотов
+ * (имя, время, размер поля, ходы), чтобы меню загрузки показывало список,
+ * не открывая сами сохранения.
+ * <p>
+ * Файл никогда не перезаписывается на месте: новое содержимое пишется во
+ * временный файл рядом, сбрасывается на диск и атомарно переименовывается
+ * поверх старого. Падение посреди записи оставляет прежнее сохранение целым.
+ * <p>
+ * Для автосохранения у слота может быть журнал ходов &lt;имя&gt;.journal
+ * (см. {@link MoveJournal}): после {@link #journal(String, GameState)} каждый ход
+ * дописывается в него одним байтом, а каждое сохранение этого слота — это уплотнение:
+ * новый снимок и пустой журнал. Загрузка слота применяет к снимку хвост журнала.
+ * <p>
+ * Записи законченных партий ({@link Replay}) лежат отдельно, в saves/replays/.
+ * <p>
+ * Вся работа с диском идёт в одном фоновом потоке, методы только ставят задачу
+ * и сразу возвращают CompletableFuture — результат в FX-поток передаёт
+ * вызывающий (Platform.runLater). Один поток ещё и упорядочивает записи, так что
+ * индекс не нужно защищать блокировками: его трогает только этот поток.
+ */
+public class SaveStore {
+    private static final int INDEX_MAGIC = 0x494E4456; // "VDNI"
+    private static final short INDEX_VERSION = 1;
+    private static final String INDEX_FILE = "slots.index";
+    private static final String SAVE_SUFFIX = ".dat";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String REPLAY_DIRECTORY = "replays";
+    private static final String REPLAY_SUFFIX = ".replay";
+    private static final Pattern SLOT_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /**
+     * Запись индекса об одном слоте.
+     */
+    public static class Slot {
+        public final String name;
+        public final long savedAtMillis;
+        public final int fieldSize;
+        public final int moves;
+
+        public Slot(String name, long savedAtMillis, int fieldSize, int moves) {
+            this.name = name;
+            this.savedAtMillis = savedAtMillis;
+            this.fieldSize = fieldSize;
+            this.moves = moves;
+        }
+    }
+
+    private final Path directory;
+    private final List<Path> legacyFiles;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "save-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Слоты по имени; читается лениво и только в потоке io
+    private Map<String, Slot> index;
+    // Слот, в журнал которого дописываются ходы, и открытый журнал (только поток io)
+    private String journalSlot;
+    private FileChannel journal;
+    private final ByteBuffer moveRecord = ByteBuffer.allocate(1);
+
+    /**
+     * @param directory   каталог со слотами (создаётся при первой записи)
+     * @param legacyFiles сохранения старых версий (один файл на игру); при первом
+     *                    открытии пустого хранилища импортируются в слот "savegame"
+     */
+    public SaveStore(Path directory, Path... legacyFiles) {
+        this.directory = directory;
+        this.legacyFiles = List.of(legacyFiles);
+    }
+
+    /**
+     * Проверяет имя слота: латиница, цифры, '_' и '-', до 64 символов
+     * (имя становится именем файла).
+     */
+    public static boolean isValidSlotName(String name) {
+        return name != null && SLOT_NAME.matcher(name).matches();
+    }
+
+    /**
+     * Сохраняет state в слот name. Состояние кодируется сразу, в вызывающем потоке,
+     * так что дальше его можно менять — в файл попадёт то, что было на момент вызова.
+     */
+    public CompletableFuture<Slot> save(String name, GameState state) {
+        if (!isValidSlotName(name)) {
+            throw new IllegalArgumentException("Bad slot name: " + name);
+        }
+        ByteBuffer data = SaveFile.encode(state);
+        int snapshotChecksum = SaveFile.checksum(data, data.limit());
+        Slot slot = new Slot(name, System.currentTimeMillis(), state.fieldSize, state.moves);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                writeAtomically(slotFile(name), data);
+                Map<String, Slot> slots = index();
+                slots.remove(name);
+                slots.put(name, slot);
+                writeIndex(slots);
+                // Все ходы журнала теперь в снимке — начинаем журнал заново
+                if (name.equals(journalSlot)) {
+                    restartJournal(snapshotChecksum);
+                }
+                return slot;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Начинает автосохранение партии в слот name: пишет снимок state и заводит
+     * к нему пустой журнал, куда дальше идут ходы из {@link #appendMove(int)}.
+     * Прежний журнал (другой партии) закрывается.
+     */
+    public CompletableFuture<Slot> journal(String name, GameState state) {
+        io.execute(() -> {
+            closeJournal();
+            journalSlot = name;
+        });
+        return save(name, state);
+    }
+
+    /**
+     * Дописывает ход (направление из {@link MoveJournal}) в журнал текущего слота.
+     * Запись — один байт в конец файла; без fsync, так что переживает падение
+     * игры, но не обязательно — падение системы.
+     */
+    public void appendMove(int direction) {
+        io.execute(() -> {
+            if (journal == null) return;
+            try {
+                moveRecord.clear();
+                moveRecord.put((byte) direction).flip();
+                journal.write(moveRecord);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Прекращает журналирование (партия закончена или брошена).
+     */
+    public void stopJournal() {
+        io.execute(() -> {
+            closeJournal();
+            journalSlot = null;
+        });
+    }
+
+    /**
+     * Удаляет слот name вместе с журналом (если в него шла запись — она прекращается).
+     * Сначала слот убирается из индекса, потом файлы: падение посередине оставит
+     * лишний файл, но не слот в меню, который нельзя загрузить.
+     */
+    public CompletableFuture<Void> delete(String name) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (name.equals(journalSlot)) {
+                    closeJournal();
+                    journalSlot = null;
+                }
+                Map<String, Slot> slots = index();
+                if (slots.remove(name) != null) {
+                    writeIndex(slots);
+                }
+                Files.deleteIfExists(journalFile(name));
+                Files.deleteIfExists(slotFile(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Читает сохранение из слота name (с ходами из журнала, если он есть).
+     */
+    public CompletableFuture<GameState> load(String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readSlotFile(slotFile(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Читает файл слота file (&lt;имя&gt;.dat) и применяет к нему журнал &lt;имя&gt;.journal
+     * из того же каталога, если он есть, — как {@link #load(String)}, но по пути к файлу
+     * (например, для {@link BatchSolver}). Файл с другим расширением читается без журнала.
+     */
+    static GameState readSlotFile(Path file) throws IOException {
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(file));
+        GameState state = SaveFile.decode(snapshot);
+        String fileName = file.getFileName().toString();
+        if (fileName.endsWith(SAVE_SUFFIX)) {
+            Path journalFile = file.resolveSibling(
+                    fileName.substring(0, fileName.length() - SAVE_SUFFIX.length()) + JOURNAL_SUFFIX);
+            if (Files.exists(journalFile)) {
+                MoveJournal.replay(state, ByteBuffer.wrap(Files.readAllBytes(journalFile)),
+                        SaveFile.checksum(snapshot, snapshot.limit()));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Список слотов, последние сохранённые — первыми.
+     */
+    public CompletableFuture<List<Slot>> slots() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Slot> slots = new ArrayList<>(index().values());
+            slots.sort(Comparator.comparingLong((Slot slot) -> slot.savedAtMillis).reversed());
+            return slots;
+        }, io);
+    }
+
+    /**
+     * Сохраняет запись партии под именем name (кодируется сразу, в вызывающем потоке).
+     */
+    public CompletableFuture<Void> saveReplay(String name, Replay replay) {
+        if (!isValidSlotName(name)) {
+            throw new IllegalArgumentException("Bad replay name: " + name);
+        }
+        ByteBuffer data = replay.encode();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                writeAtomically(replayFile(name), data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Читает запись партии name (вместе с построением контрольных точек — тоже в фоне).
+     */
+    public CompletableFuture<Replay> loadReplay(String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Replay.decode(ByteBuffer.wrap(Files.readAllBytes(replayFile(name))));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Имена сохранённых записей партий, последние — первыми.
+     */
+    public CompletableFuture<List<String>> replays() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<String> names = new ArrayList<>();
+            Path replayDirectory = directory.resolve(REPLAY_DIRECTORY);
+            if (!Files.isDirectory(replayDirectory)) return names;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(replayDirectory, "*" + REPLAY_SUFFIX)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    String name = fileName.substring(0, fileName.length() - REPLAY_SUFFIX.length());
+                    if (isValidSlotName(name)) names.add(name);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Имена — "game-" и дата со временем, так что по имени они и упорядочены
+            names.sort(Comparator.reverseOrder());
+            return names;
+        }, io);
+    }
+
+    private Path replayFile(String name) {
+        return directory.resolve(REPLAY_DIRECTORY).resolve(name + REPLAY_SUFFIX);
+    }
+
+    private Path slotFile(String name) {
+        return directory.resolve(name + SAVE_SUFFIX);
+    }
+
+    private Path journalFile(String name) {
+        return directory.resolve(name + JOURNAL_SUFFIX);
+    }
+
+    // ------------------ ЖУРНАЛ ------------------
+
+    private void restartJournal(int snapshotChecksum) throws IOException {
+        closeJournal();
+        Path file = journalFile(journalSlot);
+        writeAtomically(file, MoveJournal.header(snapshotChecksum));
+        journal = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal = null;
+    }
+
+    // ------------------ ИНДЕКС ------------------
+
+    /**
+     * Индекс в памяти. Если файла индекса нет или он повреждён, индекс строится
+     * заново по файлам слотов (а в пустое хранилище импортируются старые сохранения).
+     */
+    private Map<String, Slot> index() {
+        if (index != null) return index;
+        try {
+            index = readIndex();
+        } catch (IOException e) {
+            index = rebuildIndex();
+            if (index.isEmpty()) {
+                importLegacy();
+            }
+            // Пустой список не повод создавать каталог saves/
+            if (!index.isEmpty()) {
+                try {
+                    writeIndex(index);
+                } catch (IOException writeError) {
+                    writeError.printStackTrace();
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<String, Slot> readIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(INDEX_FILE)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.remaining();
+        if (length < 16 || buffer.getInt(0) != INDEX_MAGIC || buffer.getShort(4) != INDEX_VERSION
+                || buffer.getInt(length - 4) != SaveFile.checksum(buffer, length - 4)) {
+            throw new IOException("Corrupted save index");
+        }
+        buffer.position(8);
+        int count = buffer.getInt();
+        Map<String, Slot> slots = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                long savedAt = buffer.getLong();
+                int fieldSize = buffer.getInt();
+                int moves = buffer.getInt();
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                String slotName = new String(name, StandardCharsets.UTF_8);
+                slots.put(slotName, new Slot(slotName, savedAt, fieldSize, moves));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted save index", e);
+        }
+        return slots;
+    }
+
+    private void writeIndex(Map<String, Slot> slots) throws IOException {
+        int bytes = 12 + 4;
+        for (Slot slot : slots.values()) {
+            bytes += 8 + 4 + 4 + 2 + slot.name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(INDEX_MAGIC).putShort(INDEX_VERSION).putShort((short) 0).putInt(slots.size());
+        for (Slot slot : slots.values()) {
+            byte[] name = slot.name.getBytes(StandardCharsets.UTF_8);
+            buffer.putLong(slot.savedAtMillis).putInt(slot.fieldSize).putInt(slot.moves)
+                    .putShort((short) name.length).put(name);
+        }
+        buffer.putInt(SaveFile.checksum(buffer, buffer.position()));
+        buffer.flip();
+        writeAtomically(directory.resolve(INDEX_FILE), buffer);
+    }
+
+    private Map<String, Slot> rebuildIndex() {
+        Map<String, Slot> slots = new LinkedHashMap<>();
+        if (!Files.isDirectory(directory)) return slots;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SAVE_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - SAVE_SUFFIX.length());
+                if (!isValidSlotName(name)) continue;
+                try {
+                    GameState state = SaveFile.read(file);
+                    slots.put(name, new Slot(name, Files.getLastModifiedTime(file).toMillis(),
+                            state.fieldSize, state.moves));
+                } catch (IOException e) {
+                    System.out.println("Skipping unreadable save " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return slots;
+    }
+
+    private void importLegacy() {
+        for (Path file : legacyFiles) {
+            if (!Files.exists(file)) continue;
+            try {
+                GameState state = file.toString().endsWith(".txt") ? SaveFile.readText(file) : SaveFile.read(file);
+                String name = "savegame";
+                writeAtomically(slotFile(name), SaveFile.encode(state));
+                index.put(name, new Slot(name, Files.getLastModifiedTime(file).toMillis(),
+                        state.fieldSize, state.moves));
+                System.out.println("Imported " + file + " into slot " + name);
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Could not import " + file + ": " + e);
+            }
+        }
+    }
+
+    // ------------------ ЗАПИСЬ ------------------
+
+    /**
+     * Пишет data во временный файл в том же каталоге и переименовывает его в target.
+     */
+    private void writeAtomically(Path target, ByteBuffer data) throws IOException {
+        Path targetDirectory = target.getParent();
+        Files.createDirectories(targetDirectory);
+        Path temp = Files.createTempFile(targetDirectory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
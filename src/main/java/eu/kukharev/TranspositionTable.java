@@ -0,0 +1,142 @@
+package eu.kukharev;
+
+/**
+ * Таблица уже разобранных состояний перебора для {@link PathSolver}.
+ * <p>
+ * Состояние — это клетка, где стоит путь, плюс маска свободных клеток; ключ —
+ * Zobrist-хеш этой пары. Всё, что можно сделать дальше из состояния, зависит только
+ * от него, а не от того, каким путём мы сюда пришли. Поэтому если сюда уже
+ * приходили с суммой очков не больше и шагами не меньше, то любое продолжение
+ * того прихода даёт счёт не хуже нашего, и текущий приход можно отсечь.
+ * <p>
+ * Размер фиксирован (бюджет памяти задаётся при создании). Корзина из двух записей:
+ * первая вытесняется только состоянием с не меньшим числом свободных клеток
+ * (такие поддеревья дороже пересчитывать), вторая — всегда.
+ * <p>
+ * Таблицу можно разделять между потоками без блокировок: запись хранит
+ * key ^ pairs ^ meta, и «порванная» одновременной записью запись просто
+ * не совпадёт по ключу.
+ */
+class TranspositionTable {
+    // Три long на запись: проверка ключа, пары (сумма, шаги), число свободных клеток
+    private static final int LONGS_PER_ENTRY = 3;
+    static final int BYTES_PER_ENTRY = LONGS_PER_ENTRY * Long.BYTES;
+
+    // Пара (сумма очков, шаги) в 32 битах: 18 бит на сумму, 14 — на шаги
+    private static final int STEPS_BITS = 14;
+    private static final long STEPS_MASK = (1L << STEPS_BITS) - 1;
+    private static final long PAIR_MASK = 0xFFFF_FFFFL;
+    static final int MAX_STEPS = (int) STEPS_MASK;
+    static final int MAX_COST = (1 << (32 - STEPS_BITS)) - 1;
+
+    private final long[] table;
+    private final long bucketMask;
+
+    /**
+     * @param entries число записей (степень двойки, не меньше 2)
+     */
+    TranspositionTable(int entries) {
+        this.table = new long[entries * LONGS_PER_ENTRY];
+        this.bucketMask = (entries - 1) & ~1L;
+    }
+
+    /**
+     * Размер таблицы под бюджет памяти: степень двойки, но не больше, чем
+     * имеет смысл для поля из cells клеток.
+     *
+     * @return число записей или 0, если бюджет меньше одной корзины
+     */
+    static int entriesFor(long budgetBytes, int cells) {
+        long byBudget = budgetBytes / BYTES_PER_ENTRY;
+        long byBoard = 1L << Math.min(cells / 4, 26);
+        long entries = Long.highestOneBit(Math.min(byBudget, byBoard));
+        return (entries < 2) ? 0 : (int) entries;
+    }
+
+    /**
+     * Проверяет приход (cost, steps) в состояние key и, если он не доминирован,
+     * запоминает его.
+     *
+     * @param remaining сколько свободных клеток в состоянии (ценность записи)
+     * @return true, если сюда уже приходили не хуже — поддерево можно не перебирать
+     */
+    boolean dominatedOrStore(long key, int cost, int steps, int remaining) {
+        int bucket = (int) (key & bucketMask);
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = (bucket + slot) * LONGS_PER_ENTRY;
+            long pairs = table[offset + 1];
+            long meta = table[offset + 2];
+            if ((table[offset] ^ pairs ^ meta) != key) continue;
+
+            long first = pairs & PAIR_MASK;
+            long second = pairs >>> 32;
+            if (dominates(first, cost, steps) || dominates(second, cost, steps)) {
+                return true;
+            }
+            // Новый приход лучше старых или несравним с ними: доминированные выбрасываем,
+            // а если места нет — вытесняем вторую пару
+            if (dominatedBy(first, cost, steps)) first = 0;
+            if (dominatedBy(second, cost, steps)) second = 0;
+            if (first == 0) {
+                first = pack(cost, steps);
+            } else {
+                second = pack(cost, steps);
+            }
+            write(offset, key, first | (second << 32), meta);
+            return false;
+        }
+
+        // Состояния в таблице нет: первая запись корзины — для более ценных
+        int primary = bucket * LONGS_PER_ENTRY;
+        int offset = (table[primary + 2] <= remaining) ? primary : primary + LONGS_PER_ENTRY;
+        write(offset, key, pack(cost, steps), remaining);
+        return false;
+    }
+
+    /**
+     * Забывает приход (cost, steps) в состояние key: его поддерево перебрано не до конца,
+     * и следующий поиск с той же таблицей не должен на него опираться.
+     */
+    void forget(long key, int cost, int steps) {
+        int bucket = (int) (key & bucketMask);
+        long pair = pack(cost, steps);
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = (bucket + slot) * LONGS_PER_ENTRY;
+            long pairs = table[offset + 1];
+            long meta = table[offset + 2];
+            if ((table[offset] ^ pairs ^ meta) != key) continue;
+
+            long first = pairs & PAIR_MASK;
+            long second = pairs >>> 32;
+            if (first == pair) first = 0;
+            if (second == pair) second = 0;
+            write(offset, key, first | (second << 32), meta);
+            return;
+        }
+    }
+
+    private void write(int offset, long key, long pairs, long meta) {
+        table[offset + 1] = pairs;
+        table[offset + 2] = meta;
+        table[offset] = key ^ pairs ^ meta;
+    }
+
+    private static long pack(int cost, int steps) {
+        return ((long) cost << STEPS_BITS) | steps;
+    }
+
+    /**
+     * Старая пара (не пустая) не хуже нового прихода: сумма не больше, шагов не меньше.
+     */
+    private static boolean dominates(long pair, int cost, int steps) {
+        if (pair == 0) return false;
+        return (pair >>> STEPS_BITS) <= cost && (pair & STEPS_MASK) >= steps;
+    }
+
+    /**
+     * Новый приход не хуже старой пары (пустая пара — 0 — сюда не попадает: cost > 0).
+     */
+    private static boolean dominatedBy(long pair, int cost, int steps) {
+        return (pair >>> STEPS_BITS) >= cost && (pair & STEPS_MASK) <= steps;
+    }
+}
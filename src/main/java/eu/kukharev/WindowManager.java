@@ -1,28 +1,44 @@
 package eu.kukharev;
 
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.Scanner;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
- * Главный менеджер окон (переключение сцен, сохранение/загрузка).
+ * Главный менеджер окон (переключение сцен, сохранение/загрузка по слотам).
+ * <p>
+ * Сцены меню, правил и настроек новой игры не зависят от партии, поэтому
+ * строятся один раз, при первом показе, и дальше переиспользуются: переход
+ * между ними — только stage.setScene, без нового графа сцены и без сброса окна.
+ * Игровая сцена у каждой партии своя и по-прежнему создаётся заново.
  */
 public class WindowManager {
     public Stage stage;
 
+    // Единственное сохранение прошлых версий импортируется в слот при первом открытии
+    private final SaveStore saveStore = new SaveStore(Paths.get("saves"),
+            Paths.get("savegame.dat"), Paths.get("savegame.txt"));
+
+    private MenuManager menuManager;
+    private Scene menuScene;
+    private Scene rulesScene;
+    private Scene setupScene;
+
     /**
-     * Инициализация главного окна (стартовое меню).
+     * Инициализация главного окна (стартовое меню). Вызывается один раз при запуске.
      */
     public void initialize(Stage primaryStage) {
         this.stage = primaryStage;
-        MenuManager menuManager = new MenuManager(this);
+        // Картинки остальных экранов декодируются в фоне, пока показывается меню
+        ImageCache.preload();
+        menuManager = new MenuManager(this);
 
-        Scene menuScene = menuManager.createMenu();
         stage.setTitle("Game Application");
-        stage.setScene(menuScene);
+        stage.setScene(menuScene());
         stage.setWidth(1000);
         stage.setHeight(1000);
         stage.setResizable(false);
@@ -30,105 +46,150 @@ public class WindowManager {
     }
 
     /**
-     * Сохраняет состояние игры в файл savegame.txt.
+     * Показывает главное меню.
      */
-    public void saveGameState(GameState state) {
-        try (PrintWriter writer = new PrintWriter("savegame.txt")) {
-            writer.println(state.fieldSize);
-            writer.println(state.playerX + ";" + state.playerY);
-            writer.println(state.endX + ";" + state.endY);
-            writer.println(state.moves);
-
-            // visitedValues (пройденные числа)
-            StringBuilder visitedVals = new StringBuilder();
-            for (Integer val : state.visitedValues) {
-                visitedVals.append(val).append(",");
-            }
-            writer.println(visitedVals);
-
-            // Поле
-            for (int i = 0; i < state.fieldSize; i++) {
-                for (int j = 0; j < state.fieldSize; j++) {
-                    writer.print(state.field[i][j]);
-                    if (j < state.fieldSize - 1) writer.print(",");
-                }
-                writer.println();
-            }
+    public void showMenu() {
+        // Сохранение при закрытии относится к партии, из которой вышли;
+        // заодно обработчик больше не держит в памяти её GameFieldManager
+        stage.setOnCloseRequest(null);
+        setScene(menuScene());
+    }
 
-            // visited (маска посещённых)
-            for (int i = 0; i < state.fieldSize; i++) {
-                for (int j = 0; j < state.fieldSize; j++) {
-                    writer.print(state.visited[i][j] ? 1 : 0);
-                    if (j < state.fieldSize - 1) writer.print(",");
-                }
-                writer.println();
-            }
+    /**
+     * Показывает экран правил (возврат в меню — по клику).
+     */
+    public void showRules() {
+        if (rulesScene == null) {
+            rulesScene = menuManager.createRulesScene();
+        }
+        setScene(rulesScene);
+    }
 
-            System.out.println("Game saved to savegame.txt");
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Показывает экран настроек новой игры (с выбранными в прошлый раз настройками).
+     */
+    public void showNewGameSetup() {
+        if (setupScene == null) {
+            setupScene = new NewGameSetupManager(this).createSetupScene();
         }
+        setScene(setupScene);
+    }
+
+    private Scene menuScene() {
+        if (menuScene == null) {
+            menuScene = menuManager.createMenu();
+        }
+        return menuScene;
     }
 
     /**
-     * Загружает состояние игры из файла savegame.txt.
+     * Сохраняет состояние игры в слот slot (запись идёт в фоне, см. {@link SaveStore}).
      *
-     * @return GameState или null, если файл отсутствует или произошла ошибка
+     * @return завершается, когда сохранение записано на диск (или не удалось)
      */
-    public GameState loadGameState() {
-        File file = new File("savegame.txt");
-        if (!file.exists()) {
-            System.out.println("Save file not found.");
-            return null;
-        }
-        try (Scanner sc = new Scanner(file)) {
-            GameState state = new GameState();
-            state.fieldSize = Integer.parseInt(sc.nextLine());
-
-            String[] playerPos = sc.nextLine().split(";");
-            state.playerX = Integer.parseInt(playerPos[0]);
-            state.playerY = Integer.parseInt(playerPos[1]);
-
-            String[] endPos = sc.nextLine().split(";");
-            state.endX = Integer.parseInt(endPos[0]);
-            state.endY = Integer.parseInt(endPos[1]);
-
-            state.moves = Integer.parseInt(sc.nextLine());
-
-            String visitedValsLine = sc.nextLine();
-            if (!visitedValsLine.isEmpty()) {
-                String[] splitted = visitedValsLine.split(",");
-                for (String s : splitted) {
-                    if (!s.isEmpty()) {
-                        state.visitedValues.add(Integer.parseInt(s));
-                    }
-                }
+    public CompletableFuture<SaveStore.Slot> saveGameState(String slot, GameState state) {
+        return saveStore.save(slot, state).whenComplete((saved, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            } else {
+                System.out.println("Game saved to slot " + saved.name);
+            }
+        });
+    }
+
+    /**
+     * Включает автосохранение партии в слот slot: снимок state плюс журнал ходов
+     * ({@link #journalMove(int)}); каждое следующее сохранение этого слота уплотняет журнал.
+     */
+    public void startAutosave(String slot, GameState state) {
+        saveStore.journal(slot, state).whenComplete((saved, error) -> {
+            if (error != null) error.printStackTrace();
+        });
+    }
+
+    /**
+     * Записывает ход (направление из {@link MoveJournal}) в журнал автосохранения.
+     */
+    public void journalMove(int direction) {
+        saveStore.appendMove(direction);
+    }
+
+    /**
+     * Выключает автосохранение (выход из партии).
+     */
+    public void stopAutosave() {
+        saveStore.stopJournal();
+    }
+
+    /**
+     * Выключает автосохранение и удаляет его слот slot (партия закончена — продолжать нечего).
+     */
+    public void discardAutosave(String slot) {
+        saveStore.delete(slot).whenComplete((deleted, error) -> {
+            if (error != null) error.printStackTrace();
+        });
+    }
+
+    /**
+     * Загружает состояние игры из слота slot и передаёт его в onLoaded в FX-потоке.
+     * Если загрузить не удалось, onLoaded не вызывается.
+     */
+    public void loadGameState(String slot, Consumer<GameState> onLoaded) {
+        saveStore.load(slot).whenComplete((state, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                return;
             }
+            System.out.println("Game loaded from slot " + slot);
+            Platform.runLater(() -> onLoaded.accept(state));
+        });
+    }
 
-            state.field = new int[state.fieldSize][state.fieldSize];
-            for (int i = 0; i < state.fieldSize; i++) {
-                String line = sc.nextLine();
-                String[] splitted = line.split(",");
-                for (int j = 0; j < state.fieldSize; j++) {
-                    state.field[i][j] = Integer.parseInt(splitted[j]);
-                }
+    /**
+     * Показывает меню загрузки со списком слотов и записей партий (списки читаются в фоне).
+     */
+    public void showLoadMenu() {
+        saveStore.slots().thenCombine(saveStore.replays(), (slots, replays) -> {
+            Platform.runLater(() -> setScene(menuManager.createLoadScene(slots, replays)));
+            return null;
+        }).exceptionally(error -> {
+            error.printStackTrace();
+            return null;
+        });
+    }
+
+    /**
+     * Сохраняет запись законченной партии под именем name (в фоне).
+     */
+    public void saveReplay(String name, Replay replay) {
+        saveStore.saveReplay(name, replay).whenComplete((saved, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            } else {
+                System.out.println("Replay saved as " + name);
             }
+        });
+    }
 
-            state.visited = new boolean[state.fieldSize][state.fieldSize];
-            for (int i = 0; i < state.fieldSize; i++) {
-                String line = sc.nextLine();
-                String[] splitted = line.split(",");
-                for (int j = 0; j < state.fieldSize; j++) {
-                    state.visited[i][j] = splitted[j].equals("1");
-                }
+    /**
+     * Загружает запись партии name и показывает экран повтора.
+     */
+    public void showReplay(String name) {
+        saveStore.loadReplay(name).whenComplete((replay, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                return;
             }
+            Platform.runLater(() -> showReplay(replay));
+        });
+    }
 
-            System.out.println("Game loaded from savegame.txt");
-            return state;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+    /**
+     * Показывает экран повтора партии replay.
+     */
+    public void showReplay(Replay replay) {
+        stage.setOnCloseRequest(null);
+        setScene(new ReplayViewer(this, replay).createScene());
     }
 
     /**